@@ -0,0 +1,190 @@
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.JTableHeader;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Every event in one scrolling table, for calendars too big to list up front. The table model holds an
+ * AgendaCursor from CalendarSystem and fetches rows a window at a time as JTable asks for them (only the
+ * rows on screen are asked for), keeping the last few windows. Clicking the Start, Title or Location
+ * header swaps in a cursor in that order; nothing is copied or sorted as a whole. Edits made elsewhere are
+ * picked up by polling the model's change sequence while the panel is visible.
+ */
+public class AgendaPanel extends JPanel {
+    private static final String[] COLUMNS = {"Start", "End", "Title", "Location", "Description"};
+    private static final CalendarSystem.AgendaOrder[] ORDER_BY_COLUMN =
+            {CalendarSystem.AgendaOrder.START, null, CalendarSystem.AgendaOrder.TITLE, CalendarSystem.AgendaOrder.LOCATION, null};
+
+    private final CalendarSystem calendarSystem;
+    private final AgendaTableModel model = new AgendaTableModel();
+    private final JTable table = new JTable(model);
+    private final JLabel statusLabel = new JLabel(" ");
+    private final JButton todayButton = new JButton("Today");
+    private final Timer poll = new Timer(1000, e -> refreshIfChanged());
+    private CalendarSystem.AgendaOrder order = CalendarSystem.AgendaOrder.START;
+    private long seenSeq = Long.MIN_VALUE;
+
+    public AgendaPanel(CalendarSystem calendarSystem) {
+        this.calendarSystem = calendarSystem;
+        setLayout(new BorderLayout(10, 10));
+
+        table.setRowHeight(table.getFontMetrics(table.getFont()).getHeight() + 4);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getTableHeader().setReorderingAllowed(false);
+        table.getColumnModel().getColumn(0).setPreferredWidth(120);
+        table.getColumnModel().getColumn(1).setPreferredWidth(120);
+        table.getColumnModel().getColumn(2).setPreferredWidth(200);
+        table.getColumnModel().getColumn(4).setPreferredWidth(260);
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                JTableHeader header = (JTableHeader) e.getSource();
+                int column = table.convertColumnIndexToModel(header.columnAtPoint(e.getPoint()));
+                if (column >= 0 && ORDER_BY_COLUMN[column] != null) setOrder(ORDER_BY_COLUMN[column]);
+            }
+        });
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                CalendarEvent event = e.getClickCount() == 2 ? model.eventAt(table.getSelectedRow()) : null;
+                if (event != null) {
+                    JOptionPane.showMessageDialog(AgendaPanel.this, event.getStart().format(AgendaTableModel.TIME) + " to "
+                            + event.getEnd().format(AgendaTableModel.TIME) + " @ " + Objects.toString(event.getLocation(), "")
+                            + "\n\n" + Objects.toString(event.getDescription(), ""), event.getTitle(), JOptionPane.INFORMATION_MESSAGE);
+                }
+            }
+        });
+
+        todayButton.addActionListener(e -> jumpToToday());
+        JButton refreshButton = new JButton("Refresh");
+        refreshButton.addActionListener(e -> refresh());
+        JPanel controlPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controlPanel.add(todayButton);
+        controlPanel.add(refreshButton);
+        controlPanel.add(statusLabel);
+        add(controlPanel, BorderLayout.NORTH);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+
+        // Shown as a card: catch up when it comes into view, poll only while it is visible
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentShown(ComponentEvent e) {
+                refreshIfChanged();
+                poll.start();
+            }
+
+            @Override
+            public void componentHidden(ComponentEvent e) {
+                poll.stop();
+            }
+        });
+        refresh();
+    }
+
+    private void setOrder(CalendarSystem.AgendaOrder order) {
+        if (order == this.order) return;
+        this.order = order;
+        refresh();
+        table.scrollRectToVisible(table.getCellRect(0, 0, true));
+    }
+
+    private void refreshIfChanged() {
+        if (calendarSystem.getModSeq() != seenSeq) refresh();
+    }
+
+    // New cursor over the current store; the viewport stays where it was
+    private void refresh() {
+        seenSeq = calendarSystem.getModSeq(); // read first, so an edit during agenda() is seen next poll
+        model.setCursor(calendarSystem.agenda(order));
+        for (int c = 0; c < COLUMNS.length; c++) {
+            table.getColumnModel().getColumn(table.convertColumnIndexToView(c))
+                    .setHeaderValue(ORDER_BY_COLUMN[c] == order ? COLUMNS[c] + " ▲" : COLUMNS[c]);
+        }
+        table.getTableHeader().repaint();
+        todayButton.setEnabled(order == CalendarSystem.AgendaOrder.START);
+        statusLabel.setText(String.format("%,d events", model.getRowCount()));
+    }
+
+    private void jumpToToday() {
+        int row = model.rowAt(CalendarEvent.toEpochMinute(LocalDateTime.now().toLocalDate().atStartOfDay()));
+        if (row < 0) return;
+        row = Math.min(row, model.getRowCount() - 1);
+        if (row < 0) return;
+        table.getSelectionModel().setSelectionInterval(row, row);
+        Rectangle cell = table.getCellRect(row, 0, true);
+        cell.height = table.getVisibleRect().height; // put today at the top, not just somewhere on screen
+        table.scrollRectToVisible(cell);
+    }
+
+//===================================TABLE MODEL====================================
+    // Rows come from the cursor a window at a time; the last CACHED_WINDOWS fetched are kept
+    static class AgendaTableModel extends AbstractTableModel {
+        static final int WINDOW = 256;
+        static final int CACHED_WINDOWS = 8;
+        static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+        private CalendarSystem.AgendaCursor cursor;
+        private int rows;
+        private final Map<Integer, List<CalendarEvent>> windows = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<CalendarEvent>> eldest) {
+                return size() > CACHED_WINDOWS;
+            }
+        };
+
+        void setCursor(CalendarSystem.AgendaCursor cursor) {
+            this.cursor = cursor;
+            rows = cursor.size();
+            windows.clear();
+            fireTableDataChanged();
+        }
+
+        int rowAt(long minute) { return cursor == null ? -1 : cursor.rowAt(minute); }
+
+        // Event on that row, or null if the row is out of range (a grouped order can come up short after a removal)
+        CalendarEvent eventAt(int row) {
+            if (cursor == null || row < 0 || row >= rows) return null;
+            List<CalendarEvent> window = windows.get(row / WINDOW);
+            if (window == null) {
+                window = cursor.window(row / WINDOW * WINDOW, WINDOW);
+                windows.put(row / WINDOW, window);
+            }
+            int i = row % WINDOW;
+            return i < window.size() ? window.get(i) : null;
+        }
+
+        int cachedWindows() { return windows.size(); }
+
+        @Override
+        public int getRowCount() { return rows; }
+
+        @Override
+        public int getColumnCount() { return COLUMNS.length; }
+
+        @Override
+        public String getColumnName(int column) { return COLUMNS[column]; }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            CalendarEvent e = eventAt(row);
+            if (e == null) return "";
+            switch (column) {
+                case 0: return e.getStart().format(TIME);
+                case 1: return e.getEnd().format(TIME);
+                case 2: return e.getTitle();
+                case 3: return Objects.toString(e.getLocation(), "");
+                default: return Objects.toString(e.getDescription(), "");
+            }
+        }
+    }
+}//End Class
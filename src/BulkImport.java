@@ -0,0 +1,104 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Parses a set of calendar files concurrently for CalendarSystem.importAll. Directories are expanded to
+ * the files in them that look like calendars, compressed ones included (not recursive), and formats are
+ * sniffed by FormatDetector. Each file is parsed on the ForkJoin common pool into its own list, so the
+ * workers share nothing; a file that fails only fails itself.
+ */
+public class BulkImport {
+
+    // What one file produced
+    public static final class FileResult {
+        public final Path path;
+        public final CalendarFormat format;   // going by the name; null for archives and unknown extensions
+        public final List<CalendarEvent> events;
+        public final int skipped;
+        public final String error;            // null when the file was read
+        public final long millis;
+
+        FileResult(Path path, CalendarFormat format, List<CalendarEvent> events, int skipped, String error, long millis) {
+            this.path = path;
+            this.format = format;
+            this.events = events;
+            this.skipped = skipped;
+            this.error = error;
+            this.millis = millis;
+        }
+
+        @Override
+        public String toString() {
+            String name = path.getFileName().toString();
+            if (error != null) return name + ": failed (" + error + ")";
+            return name + ": " + events.size() + " events" + (skipped > 0 ? ", " + skipped + " skipped" : "")
+                    + " in " + millis + " ms";
+        }
+    }
+
+    // Results in the order the files were given (directory contents sorted by name)
+    public static List<FileResult> parseAll(Collection<Path> paths) throws IOException {
+        return parseAll(paths, r -> { });
+    }
+
+    // onFile sees each result as soon as its file is done, on the worker thread that parsed it
+    public static List<FileResult> parseAll(Collection<Path> paths, Consumer<FileResult> onFile) throws IOException {
+        return expand(paths).parallelStream()
+                .map(path -> {
+                    FileResult r = parse(path);
+                    onFile.accept(r);
+                    return r;
+                })
+                .collect(Collectors.toList());
+    }
+
+    static List<Path> expand(Collection<Path> paths) throws IOException {
+        Set<Path> files = new LinkedHashSet<>();
+        for (Path p : paths) {
+            if (Files.isDirectory(p)) {
+                try (Stream<Path> listing = Files.list(p)) {
+                    listing.filter(Files::isRegularFile)
+                            .filter(f -> FormatDetector.looksLikeCalendarFile(f.getFileName().toString()))
+                            .sorted()
+                            .forEach(files::add);
+                }
+            } else {
+                files.add(p);
+            }
+        }
+        return new ArrayList<>(files);
+    }
+
+    private static FileResult parse(Path file) {
+        long began = System.nanoTime();
+        CalendarFormat format = CalendarFormat.fromFileName(file.getFileName().toString());
+        List<CalendarEvent> events = new ArrayList<>();
+        try {
+            int skipped = FormatDetector.read(file, events::add);
+            return new FileResult(file, format, events, skipped, null, (System.nanoTime() - began) / 1_000_000);
+        } catch (IOException | UncheckedIOException e) {
+            return new FileResult(file, format, new ArrayList<>(), 0, String.valueOf(e.getMessage()),
+                    (System.nanoTime() - began) / 1_000_000);
+        }
+    }
+
+    // One line per file plus a total, for the import dialog and the console
+    public static String summary(List<FileResult> results) {
+        StringBuilder out = new StringBuilder();
+        int events = 0, failed = 0;
+        for (FileResult r : results) {
+            out.append(r).append('\n');
+            events += r.events.size();
+            if (r.error != null) failed++;
+        }
+        out.append(results.size()).append(" files, ").append(events).append(" events imported");
+        if (failed > 0) out.append(", ").append(failed).append(" failed");
+        return out.toString();
+    }
+}//End Class
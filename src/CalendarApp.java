@@ -1,7 +1,18 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
 
 public class CalendarApp extends JFrame {
+    //Snapshot + edit journal live here; loaded on launch, every edit is journaled. Closing only flushes the
+    //journal, the snapshot is rewritten in the background once the journal has grown (see openStore)
+    static final Path STORE_DIR = Path.of(System.getProperty("user.home"), ".calendar-system");
+    //This year and the ones before it that stay live; older years go read-only into the compact archive
+    static final int LIVE_YEARS = 2;
+
     private final JPanel cardPanel;
     private final CardLayout cardLayout;
     private final CalendarController controller;
@@ -14,6 +25,10 @@ public class CalendarApp extends JFrame {
         controller.importCalendar(format, this);
     }
 
+    public void importFiles() {
+        controller.importFiles(this);
+    }
+
     public CalendarApp() {
         super("Swing Calendar System");
         setDefaultCloseOperation(EXIT_ON_CLOSE);
@@ -21,6 +36,22 @@ public class CalendarApp extends JFrame {
         setLocationRelativeTo(null);
 
         CalendarSystem calendarSystem = new CalendarSystem();
+        try {
+            calendarSystem.openStore(STORE_DIR, EventJournal.FsyncPolicy.INTERVAL);
+        } catch (IOException e) {
+            System.err.println("Could not open saved calendar, changes will not be kept: " + e.getMessage());
+        }
+        calendarSystem.archiveBefore(LocalDate.now().minusYears(LIVE_YEARS - 1).withDayOfYear(1));
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                try {
+                    calendarSystem.closeJournal(); // on the EDT, so no compaction here
+                } catch (IOException ex) {
+                    System.err.println("Could not save calendar: " + ex.getMessage());
+                }
+            }
+        });
         cardLayout = new CardLayout();
         cardPanel = new JPanel(cardLayout);
 
@@ -30,8 +61,18 @@ public class CalendarApp extends JFrame {
         // Add your panels
         cardPanel.add(new WelcomePanel(this), "welcome");
         cardPanel.add(new AddEventPanel(calendarSystem), "add");
-        cardPanel.add(new CalendarMonthPanel(calendarSystem), "calendar");
-        cardPanel.add(new SearchPanel(calendarSystem), "search");
+        CalendarMonthPanel monthPanel = new CalendarMonthPanel(calendarSystem);
+        YearHeatmapPanel yearPanel = new YearHeatmapPanel(calendarSystem);
+        SearchPanel searchPanel = new SearchPanel(calendarSystem);
+        cardPanel.add(monthPanel, "calendar");
+        cardPanel.add(yearPanel, "year");
+        cardPanel.add(new AgendaPanel(calendarSystem), "agenda");
+        cardPanel.add(searchPanel, "search");
+
+        //Imports show up in these while they run, batch by batch
+        controller.addStoreListener(monthPanel::reload);
+        controller.addStoreListener(yearPanel::reload);
+        controller.addStoreListener(searchPanel::reload);
 
         setJMenuBar(new CalendarMenuBar(this));
 
@@ -1,14 +1,35 @@
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CalendarController {
     private final CalendarSystem system;
+    private final List<Runnable> storeListeners = new ArrayList<>(); // EDT only
 
     public CalendarController(CalendarSystem system) {
         this.system = system;
     }
 
+    // Run on the EDT whenever an import put events into the store (after every batch, not only at the end)
+    public void addStoreListener(Runnable listener) {
+        storeListeners.add(listener);
+    }
+
+    private void storeChanged() {
+        for (Runnable listener : storeListeners) listener.run();
+    }
+
+    // Imports are added this many events at a time, so they show up in the month view while the file is read
+    static final int IMPORT_BATCH = 20_000;
+
+    // Writes on a background task with progress and Cancel; a cancelled export leaves no file behind
     public void exportCalendar(String format, Component parent) {
         JFileChooser chooser = new JFileChooser(new java.io.File("."));
         chooser.setDialogTitle("Export to " + format.toUpperCase());
@@ -17,13 +38,24 @@ public class CalendarController {
         int result = chooser.showSaveDialog(parent);
         if (result == JFileChooser.APPROVE_OPTION) {
             File file = chooser.getSelectedFile();
-            switch (format.toLowerCase()) {
-                case "csv"  -> system.exportToCsv(file.getAbsolutePath());
-                case "html" -> system.exportToHtml(file.getAbsolutePath());
-                case "ics"  -> system.exportEventsToIcs(file.getAbsolutePath());
-                case "json" -> system.exportToJson(file.getAbsolutePath());
-                default -> showError("Unsupported export format: " + format, parent);
+            CalendarFormat target = CalendarFormat.fromFileName("." + format);
+            if (target == null) {
+                showError("Unsupported export format: " + format, parent);
+                return;
             }
+            new ProgressTask<Long>(parent, "Export to " + file.getName()) {
+                @Override
+                protected Long work() throws IOException {
+                    long total = system.size();
+                    return system.export(file.toPath(), target, written -> {
+                        checkCancelled();
+                        report(written, total, String.format("%,d of %,d events written", written, total));
+                    });
+                }
+
+                @Override
+                protected void succeeded(Long written) { }
+            }.start();
         }
     }
 
@@ -34,16 +66,86 @@ public class CalendarController {
         int result = chooser.showOpenDialog(parent);
         if (result == JFileChooser.APPROVE_OPTION) {
             File file = chooser.getSelectedFile();
-            switch (format.toLowerCase()) {
-                case "csv"  -> system.importFromCsv(file.getAbsolutePath());
-                case "html" -> system.importFromHtml(file.getAbsolutePath());
-                case "ics"  -> system.importFromIcs(file.getAbsolutePath());
-                case "json" -> system.importFromJson(file.getAbsolutePath());
-                default -> showError("Unsupported import format: " + format, parent);
-            }
+            // The format is sniffed from the file itself (also .gz and .zip), the menu item is only a hint
+            importInBackground(file.toPath(), parent);
         }
     }
 
+    // Reads on a background task: progress in bytes, events added every IMPORT_BATCH, Cancel keeps what's in
+    private void importInBackground(Path path, Component parent) {
+        new ProgressTask<int[]>(parent, "Import " + path.getFileName()) {
+            private volatile int[] totals = new int[4];
+
+            @Override
+            protected int[] work() throws IOException {
+                try (InputStream in = counting(Files.newInputStream(path), Files.size(path))) {
+                    return system.importStream(in, path.getFileName().toString(), IMPORT_BATCH, t -> {
+                        totals = t;
+                        changed(); // the views reload on the EDT while the rest is still being read
+                    });
+                }
+            }
+
+            @Override
+            protected void storeChanged() {
+                CalendarController.this.storeChanged();
+            }
+
+            @Override
+            protected void bytesRead(long count, long total) {
+                int[] t = totals;
+                report(count, total, String.format("Read %s of %s, %,d events in", megabytes(count), megabytes(total),
+                        t[0] + t[1] + t[2]));
+            }
+
+            @Override
+            protected void succeeded(int[] t) {
+                JOptionPane.showMessageDialog(parent, String.format("%,d new, %,d updated, %,d unchanged, %,d removed", t[0], t[1], t[2], t[3]),
+                        "Import finished", JOptionPane.INFORMATION_MESSAGE);
+            }
+
+            @Override
+            protected void cancelled() {
+                int[] t = totals;
+                JOptionPane.showMessageDialog(parent, String.format("Import cancelled. The %,d events read before that were kept.",
+                        t[0] + t[1] + t[2]), "Import cancelled", JOptionPane.INFORMATION_MESSAGE);
+            }
+        }.start();
+    }
+
+    // Several files and/or whole folders at once, parsed in parallel in the background, then a per-file summary
+    public void importFiles(Component parent) {
+        JFileChooser chooser = new JFileChooser(new java.io.File("."));
+        chooser.setDialogTitle("Import files or folders");
+        chooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+        chooser.setMultiSelectionEnabled(true);
+
+        if (chooser.showOpenDialog(parent) != JFileChooser.APPROVE_OPTION) return;
+        List<Path> paths = new ArrayList<>();
+        for (File f : chooser.getSelectedFiles()) paths.add(f.toPath());
+        new ProgressTask<List<BulkImport.FileResult>>(parent, "Import files") {
+            @Override
+            protected List<BulkImport.FileResult> work() throws IOException {
+                int files = BulkImport.expand(paths).size();
+                AtomicInteger done = new AtomicInteger();
+                return system.importAll(paths, r -> {
+                    checkCancelled(); // nothing is added until every file is parsed, so this drops the lot
+                    int n = done.incrementAndGet();
+                    report(n, files, n + " of " + files + " files read (" + r.path.getFileName() + ")");
+                });
+            }
+
+            @Override
+            protected void succeeded(List<BulkImport.FileResult> results) {
+                storeChanged();
+                JTextArea summary = new JTextArea(BulkImport.summary(results), 12, 50);
+                summary.setEditable(false);
+                JOptionPane.showMessageDialog(parent, new JScrollPane(summary), "Import summary",
+                        JOptionPane.INFORMATION_MESSAGE);
+            }
+        }.start();
+    }
+
     private void showError(String message, Component parent) {
         JOptionPane.showMessageDialog(parent, message, "Error", JOptionPane.ERROR_MESSAGE);
     }
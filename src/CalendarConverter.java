@@ -0,0 +1,82 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Headless converter between the calendar formats, for batch jobs:
+ *
+ *   java CalendarConverter [convert] in.ics out.json
+ *
+ * The input format is sniffed from the data (gzip and zip input are inflated on the fly, see
+ * FormatDetector); the output format comes from the extension. The reader hands over one event at a
+ * time and it goes straight to the writer, so memory stays the same for a 10 KB or a 10 GB feed. Only
+ * the readers, the exporters and CalendarEvent are loaded: no Swing, no CalendarSystem store.
+ * Exit codes: 0 done, 1 conversion failed (output removed), 2 bad arguments.
+ */
+public class CalendarConverter {
+
+    // Number of events written and skipped
+    public static final class Stats {
+        public final long written;
+        public final int skipped;
+
+        Stats(long written, int skipped) {
+            this.written = written;
+            this.skipped = skipped;
+        }
+    }
+
+    public static void main(String[] args) {
+        int first = args.length > 0 && args[0].equals("convert") ? 1 : 0;
+        if (args.length - first != 2) {
+            System.err.println("Usage: CalendarConverter [convert] <input.ics|csv|json|html> <output.ics|csv|json|html>");
+            System.exit(2);
+        }
+        Path in = Path.of(args[first]);
+        Path out = Path.of(args[first + 1]);
+        CalendarFormat to = CalendarFormat.fromFileName(out.getFileName().toString());
+        if (to == null) {
+            System.err.println("Unknown output format: " + out);
+            System.exit(2);
+        }
+
+        try {
+            long began = System.nanoTime();
+            Stats stats = convert(in, out, to);
+            System.err.printf("Converted %d events in %d ms%s%n", stats.written, (System.nanoTime() - began) / 1_000_000,
+                    stats.skipped > 0 ? " (" + stats.skipped + " unreadable entries skipped)" : "");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Conversion failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // Streams in into out. On failure the partial output file is deleted and the error rethrown.
+    public static Stats convert(Path in, Path out, CalendarFormat to) throws IOException {
+        long[] written = {0};
+        int skipped;
+        try (InputStream input = Files.newInputStream(in);
+             EventExporter exporter = to.exporter(ChannelTextWriter.open(out))) {
+            skipped = FormatDetector.read(input, in.getFileName().toString(), e -> {
+                try {
+                    if (e.isRemoval()) {
+                        if (!exporter.writesRemovals()) return; // CSV/HTML can't say "deleted", drop it
+                        exporter.writeRemoved(e);
+                    } else {
+                        exporter.write(e);
+                    }
+                    written[0]++;
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(out);
+            if (e instanceof UncheckedIOException) throw ((UncheckedIOException) e).getCause();
+            throw e;
+        }
+        return new Stats(written[0], skipped);
+    }
+}//End Class
@@ -1,27 +1,155 @@
+import java.time.DateTimeException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.UUID;
+import java.time.ZoneOffset;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CalendarEvent {
-    private final String id = UUID.randomUUID().toString();
+    //Ids are a time ordered counter (seeded from the clock in microseconds) plus a random tag picked once per run,
+    //so making an id is one atomic increment instead of a SecureRandom UUID per event.
+    private static final AtomicLong ID_SEQUENCE = new AtomicLong(System.currentTimeMillis() * 1000);
+    private static final String ID_NODE = String.format("%08x", ThreadLocalRandom.current().nextInt());
+    //End minute of a removal marker, and the start of one whose start isn't known. No real event has it.
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private final String id;
     private final String title;
     private final String description;
     private final String location;
-    private final LocalDateTime start;
-    private final LocalDateTime end;
+    //Times are kept as minutes since 1970-01-01T00:00 (wall clock, no zone) instead of two LocalDateTime objects,
+    //which each drag a LocalDate and a LocalTime along. getStart()/getEnd() build the LocalDateTime on demand.
+    private final long startMinute;
+    private final long endMinute;
 
     public CalendarEvent(String title, String description, String location,
                          LocalDateTime start, LocalDateTime end) {
+        this(title, description, location, toEventMinute(start), toEventMinute(end));
+    }
+
+    public CalendarEvent(String title, String description, String location,
+                         long startMinute, long endMinute) {
+        this(nextId(), title, description, location, startMinute, endMinute);
+    }
+
+    // Keeps an existing id: imported ICS UID, snapshot and journal loads, updates of an existing event
+    public CalendarEvent(String id, String title, String description, String location,
+                         long startMinute, long endMinute) {
+        this.id = id;
         this.title = title;
         this.description = description;
         this.location = location;
-        this.start = start;
-        this.end = end;
+        this.startMinute = startMinute;
+        this.endMinute = endMinute;
     }
 
     public String getId() { return id; }
     public String getTitle() { return title; }
     public String getDescription() { return description; }
     public String getLocation() { return location; }
-    public LocalDateTime getStart() { return start; }
-    public LocalDateTime getEnd() { return end; }
-}
\ No newline at end of file
+    public LocalDateTime getStart() { return fromEpochMinute(startMinute); }
+    public LocalDateTime getEnd() { return fromEpochMinute(endMinute); }
+    public long getStartMinute() { return startMinute; }
+    public long getEndMinute() { return endMinute; }
+
+    public static String nextId() {
+        return Long.toHexString(ID_SEQUENCE.incrementAndGet()) + "-" + ID_NODE;
+    }
+
+    // For imported records without a UID: the id is a hash of title, location, start and end, so importing
+    // the same feed again finds the same ids and updates in place instead of adding a second copy.
+    public static CalendarEvent withContentId(String title, String description, String location,
+                                              long startMinute, long endMinute) {
+        return new CalendarEvent(contentId(title, location, startMinute, endMinute),
+                title, description, location, startMinute, endMinute);
+    }
+
+    static String contentId(String title, String location, long startMinute, long endMinute) {
+        long h = 0x9E3779B97F4A7C15L;
+        h = hash(h, title);
+        h = hash(h, location);
+        h = fmix(h ^ startMinute) * 31 + endMinute;
+        return "c-" + Long.toHexString(fmix(h));
+    }
+
+    private static long hash(long h, String s) {
+        if (s != null) for (int i = 0; i < s.length(); i++) h = h * 0x100000001B3L + s.charAt(i);
+        return fmix(h + 0x1F); // field separator, "ab"+"c" and "a"+"bc" differ
+    }
+
+    // MurmurHash3 finalizer
+    private static long fmix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    // A removal read from or written to a delta file (ICS cancel, JSON "deleted"): the id, and the start if
+    // known (ICS wants a DTSTART). Never stored: addEvents turns it into a remove. Change log tombstones too.
+    public static CalendarEvent removal(String id, long startMinute) {
+        return new CalendarEvent(id, "", "", "", startMinute, NO_TIME);
+    }
+
+    public boolean isRemoval() { return endMinute == NO_TIME; }
+
+    // Same fields, id aside. Lets a re-import skip records that did not change.
+    public boolean sameContent(CalendarEvent other) {
+        return other != null && startMinute == other.startMinute && endMinute == other.endMinute
+                && Objects.equals(title, other.title) && Objects.equals(description, other.description)
+                && Objects.equals(location, other.location);
+    }
+
+    // Minute a time falls in, seconds floored. For query bounds; event times go through toEventMinute.
+    public static long toEpochMinute(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    // An event time: the calendar works in whole minutes everywhere (HH:mm), so a time with seconds is
+    // refused instead of silently moved. Readers count such a record as skipped and report it.
+    public static long toEventMinute(LocalDateTime time) {
+        if (time.getSecond() != 0 || time.getNano() != 0) throw new DateTimeException("Seconds are not supported: " + time);
+        return toEpochMinute(time);
+    }
+
+    public static LocalDateTime fromEpochMinute(long minute) {
+        return LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC);
+    }
+
+    // ISO local date-time as written by the CSV/JSON exports (yyyy-MM-ddTHH:mm[:ss]). Digits are read by hand
+    // on the common shape, anything else falls back to LocalDateTime.parse. Throws DateTimeException if bad,
+    // or if the seconds aren't zero (see toEventMinute).
+    public static long parseIsoMinute(String s) {
+        if (s.length() >= 16 && s.charAt(4) == '-' && s.charAt(7) == '-' && s.charAt(10) == 'T' && s.charAt(13) == ':') {
+            int y = digits(s, 0, 4), mo = digits(s, 5, 2), d = digits(s, 8, 2), h = digits(s, 11, 2), mi = digits(s, 14, 2);
+            if ((y | mo | d | h | mi) >= 0) {
+                if (h > 23 || mi > 59) throw new DateTimeException("Invalid time: " + s);
+                if (s.length() > 16 && s.charAt(16) == ':' && !zeroSeconds(s)) throw new DateTimeException("Seconds are not supported: " + s);
+                return LocalDate.of(y, mo, d).toEpochDay() * 24 * 60 + h * 60 + mi;
+            }
+        }
+        return toEventMinute(LocalDateTime.parse(s.trim()));
+    }
+
+    // The ":ss[.fff]" after HH:mm is all zeros
+    private static boolean zeroSeconds(String s) {
+        for (int i = 17; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= '1' && c <= '9') return false;
+            if (c != '0' && c != '.') break;
+        }
+        return true;
+    }
+
+    private static int digits(String s, int from, int count) {
+        int v = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+}
@@ -0,0 +1,90 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * The file formats the calendar reads and writes, with the readers behind them. Parsing only feeds a
+ * sink and never touches a CalendarSystem, so several files can be parsed at once and merged later.
+ */
+public enum CalendarFormat {
+    ICS("ics"),
+    CSV("csv"),
+    JSON("json"),
+    HTML("html");
+
+    public final String extension;
+
+    CalendarFormat(String extension) {
+        this.extension = extension;
+    }
+
+    // By file extension (.ics, .ical, .csv, .json, .html, .htm), null if it's none of ours
+    public static CalendarFormat fromFileName(String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot < 0) return null;
+        return switch (name.substring(dot + 1).toLowerCase(Locale.ROOT)) {
+            case "ics", "ical", "ifb", "icalendar" -> ICS;
+            case "csv" -> CSV;
+            case "json" -> JSON;
+            case "html", "htm" -> HTML;
+            default -> null;
+        };
+    }
+
+    // Parses the whole file into sink, returns how many entries were unreadable and skipped
+    public int read(Path path, Consumer<CalendarEvent> sink) throws IOException {
+        if (this == CSV) { // split across cores, see CsvEventReader
+            try {
+                CsvEventReader.Result result = CsvEventReader.readParallel(path);
+                result.events.forEach(sink);
+                return result.skipped;
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in, sink);
+        }
+    }
+
+    // Streaming parse, one event at a time in file order with a fixed-size buffer. Doesn't close in.
+    public int read(InputStream in, Consumer<CalendarEvent> sink) throws IOException {
+        switch (this) {
+            case ICS: {
+                IcsReader reader = new IcsReader(utf8(in));
+                reader.forEach(sink);
+                return reader.getSkipped();
+            }
+            case JSON: {
+                JsonEventReader reader = new JsonEventReader(utf8(in));
+                reader.forEach(sink);
+                return reader.getSkipped();
+            }
+            case CSV:
+                return CsvEventReader.read(in, sink);
+            case HTML: {
+                HtmlEventReader reader = new HtmlEventReader(utf8(in));
+                reader.forEach(sink);
+                return reader.getSkipped();
+            }
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    public EventExporter exporter(ChannelTextWriter out) throws IOException {
+        return switch (this) {
+            case ICS -> EventExporter.ics(out);
+            case CSV -> EventExporter.csv(out);
+            case JSON -> EventExporter.json(out);
+            case HTML -> EventExporter.html(out);
+        };
+    }
+
+    private static BufferedReader utf8(InputStream in) {
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+    }
+}//End Enum
@@ -13,12 +13,20 @@ public class CalendarMenuBar extends JMenuBar {
         JMenuItem calendarItem = new JMenuItem("Calendar View");
         calendarItem.addActionListener(e -> app.showCard("calendar"));
 
+        JMenuItem yearItem = new JMenuItem("Year Overview");
+        yearItem.addActionListener(e -> app.showCard("year"));
+
+        JMenuItem agendaItem = new JMenuItem("Agenda List");
+        agendaItem.addActionListener(e -> app.showCard("agenda"));
+
         JMenuItem searchItem = new JMenuItem("Search Events");
         searchItem.addActionListener(e -> app.showCard("search"));
 
         viewMenu.add(welcomeItem);
         viewMenu.add(addItem);
         viewMenu.add(calendarItem);
+        viewMenu.add(yearItem);
+        viewMenu.add(agendaItem);
         viewMenu.add(searchItem);
 
         add(viewMenu);
@@ -2,13 +2,12 @@ import javax.swing.*;
 import java.awt.*;
 import java.time.*;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class CalendarMonthPanel extends JPanel {
     private final CalendarSystem calendarSystem;
     private final JComboBox<Integer> yearBox;
     private final JComboBox<Month> monthBox;
-    private final JPanel calendarGrid;
+    private final MonthGrid calendarGrid;
 
 
     public CalendarMonthPanel(CalendarSystem calendarSystem) {
@@ -36,76 +35,27 @@ public class CalendarMonthPanel extends JPanel {
         controlPanel.add(loadButton);
         add(controlPanel, BorderLayout.NORTH);
 
-        // Calendar grid
-        calendarGrid = new JPanel(new GridLayout(0, 7, 5, 5));
+        // Calendar grid, painted in one component (see MonthGrid)
+        calendarGrid = new MonthGrid(calendarSystem);
+        calendarGrid.setOnDayClicked(this::showEventsOnDate);
         add(calendarGrid, BorderLayout.CENTER);
 
         loadButton.addActionListener(e -> renderCalendar());
         renderCalendar();
     }
 
+    // Only points the grid at the selected month; the grid keeps its own model and paints it
     private void renderCalendar() {
-        calendarGrid.removeAll();
-
-        // Add day headers
-        for (DayOfWeek day : DayOfWeek.values()) {
-            JLabel lbl = new JLabel(day.toString().substring(0, 2), SwingConstants.CENTER);
-            lbl.setFont(new Font("SansSerif", Font.BOLD, 12));
-            calendarGrid.add(lbl);
-        }
-
         int year = (int) yearBox.getSelectedItem();
         Month month = (Month) monthBox.getSelectedItem();
-        LocalDate first = LocalDate.of(year, month, 1);
-        int firstDayIndex = first.getDayOfWeek().getValue() % 7;
-        int daysInMonth = month.length(Year.isLeap(year));
-
-        // Blank cells
-        for (int i = 0; i < firstDayIndex; i++) calendarGrid.add(new JLabel());
-
-        // Fill in days
-        for (int day = 1; day <= daysInMonth; day++) {
-            LocalDate current = LocalDate.of(year, month, day);
-
-
-            List<CalendarEvent> events = calendarSystem.getEventsForDate(current);
-            boolean hasEvent = !events.isEmpty();
-
-            JButton dayBtn = new JButton(String.valueOf(day));
-            dayBtn.setFocusPainted(false);
-
-            if (hasEvent) {
-                boolean isOffDay = events.stream()
-                        .anyMatch(e -> e.getTitle().equalsIgnoreCase("OFF"));
-
-                if (isOffDay) {
-                    dayBtn.setBackground(new Color(255, 200, 200)); // light red
-                } else {
-                    int eventCount = events.size();
-                    int greenShade = Math.max(255 - (eventCount * 20), 180); // clamp brightness
-                    dayBtn.setBackground(new Color(200, greenShade, 200)); // darker with more events
-                }
-
-                dayBtn.setFont(dayBtn.getFont().deriveFont(Font.BOLD));
-
-                String tooltip = events.stream()
-                        .map(e -> "• " + e.getTitle())
-                        .collect(Collectors.joining("<br>"));
-                dayBtn.setToolTipText("<html>" + tooltip + "</html>");
-            }//End If(hasEvent)
-
-
-
-
-
-
-            dayBtn.setFocusPainted(false);
-            dayBtn.addActionListener(e -> showEventsOnDate(current));
-            calendarGrid.add(dayBtn);
-        }
+        YearMonth selected = YearMonth.of(year, month);
+        if (selected.equals(calendarGrid.getMonth())) calendarGrid.reload();
+        else calendarGrid.setMonth(selected);
+    }
 
-        revalidate();
-        repaint();
+    // The store changed underneath (an import batch went in): re-read the month on screen
+    public void reload() {
+        calendarGrid.reload();
     }
 
     private void showEventsOnDate(LocalDate date) {
@@ -0,0 +1,237 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary save file for the whole calendar, meant to be loaded on every launch.
+ *
+ *   magic "CALS", version (1 byte)
+ *   varint event count, varint string count
+ *   string table: varint byte length + UTF-8, for every distinct title/description/location
+ *   events in start order: varint id length + UTF-8 id, varint title/description/location table
+ *   indexes, zigzag varint start minus the previous start, zigzag varint end minus start
+ *   CRC32 of everything above (4 bytes, big endian)
+ *
+ * Sorted starts make the deltas a byte or two, and repeated strings are stored once, so a typical event
+ * is around 30 bytes. Saving goes to a temp file that is moved over the old one, so a crash mid-save
+ * leaves the previous snapshot intact. Loading reads the file into one heap buffer with a single channel
+ * read and decodes from that. Not mmap: a mapping stays until GC, and on Windows the file can't be
+ * replaced while it is mapped, which is exactly what the next save (or compaction) does.
+ */
+public class CalendarSnapshot {
+    private static final byte[] MAGIC = {'C', 'A', 'L', 'S'};
+    private static final int VERSION = 1;
+
+    // Writes events (iterated twice, so pass a frozen view) to path, replacing it atomically
+    public static void write(Path path, Iterable<CalendarEvent> events) throws IOException {
+        Map<String, Integer> strings = new HashMap<>();
+        List<String> table = new ArrayList<>();
+        int count = 0;
+        for (CalendarEvent e : events) {
+            intern(strings, table, e.getTitle());
+            intern(strings, table, e.getDescription());
+            intern(strings, table, e.getLocation());
+            count++;
+        }
+
+        Path dir = path.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BinaryOut out = new BinaryOut(FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+            out.bytes(MAGIC);
+            out.raw(VERSION);
+            out.varint(count);
+            out.varint(table.size());
+            for (String s : table) out.string(s);
+
+            long previousStart = 0;
+            for (CalendarEvent e : events) {
+                out.string(e.getId());
+                out.varint(strings.get(nullToEmpty(e.getTitle())));
+                out.varint(strings.get(nullToEmpty(e.getDescription())));
+                out.varint(strings.get(nullToEmpty(e.getLocation())));
+                out.varint(zigzag(e.getStartMinute() - previousStart));
+                out.varint(zigzag(e.getEndMinute() - e.getStartMinute()));
+                previousStart = e.getStartMinute();
+            }
+            out.finish();
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Events in start order. IOException if the file is truncated, corrupt or from another version.
+    public static List<CalendarEvent> read(Path path) throws IOException {
+        try {
+            ByteBuffer map = readFully(path);
+            long size = map.limit();
+            if (size < MAGIC.length + 1 + 4) throw new IOException("Not a calendar snapshot: " + path);
+
+            int bodyLength = (int) size - 4;
+            CRC32 crc = new CRC32();
+            crc.update(map.slice(0, bodyLength));
+            if ((int) crc.getValue() != map.getInt(bodyLength)) throw new IOException("Snapshot checksum mismatch: " + path);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (map.get(i) != MAGIC[i]) throw new IOException("Not a calendar snapshot: " + path);
+            }
+            int version = map.get(MAGIC.length);
+            if (version != VERSION) throw new IOException("Unsupported snapshot version " + version);
+
+            BinaryIn in = new BinaryIn(map.slice(0, bodyLength).position(MAGIC.length + 1));
+            int count = in.varintInt();
+            String[] table = new String[in.varintInt()];
+            for (int i = 0; i < table.length; i++) table[i] = in.string();
+
+            List<CalendarEvent> events = new ArrayList<>(count);
+            long start = 0;
+            for (int i = 0; i < count; i++) {
+                String id = in.string();
+                String title = table[in.varintInt()];
+                String description = table[in.varintInt()];
+                String location = table[in.varintInt()];
+                start += unzigzag(in.varint());
+                long end = start + unzigzag(in.varint());
+                events.add(new CalendarEvent(id, title, description, location, start, end));
+            }
+            return events;
+        } catch (IndexOutOfBoundsException | BufferUnderflowException bad) {
+            throw new IOException("Corrupt snapshot: " + path, bad);
+        }
+    }
+
+    // The whole file in a heap buffer; the channel is closed before this returns
+    static ByteBuffer readFully(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) throw new IOException("File too large: " + path + " (" + size + " bytes)");
+            ByteBuffer buf = ByteBuffer.allocate((int) size);
+            while (buf.hasRemaining() && channel.read(buf) >= 0) { }
+            return buf.flip();
+        }
+    }
+
+    private static void intern(Map<String, Integer> strings, List<String> table, String s) {
+        s = nullToEmpty(s);
+        if (strings.putIfAbsent(s, table.size()) == null) table.add(s);
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    static long zigzag(long v) { return (v << 1) ^ (v >> 63); }
+    static long unzigzag(long v) { return (v >>> 1) ^ -(v & 1); }
+
+//===================================BYTE PLUMBING====================================
+    // Buffered channel output that keeps a running CRC32 of everything written
+    static final class BinaryOut implements AutoCloseable {
+        private final FileChannel channel;
+        private final byte[] bytes = new byte[1 << 18];
+        private final ByteBuffer view = ByteBuffer.wrap(bytes);
+        private final CRC32 crc = new CRC32();
+        private int count;
+
+        BinaryOut(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void raw(int b) throws IOException {
+            if (count == bytes.length) flushBuffer();
+            bytes[count++] = (byte) b;
+        }
+
+        void bytes(byte[] b) throws IOException {
+            for (byte x : b) raw(x);
+        }
+
+        void varint(long v) throws IOException {
+            if (count + 10 > bytes.length) flushBuffer();
+            while ((v & ~0x7FL) != 0) {
+                bytes[count++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[count++] = (byte) v;
+        }
+
+        void string(String s) throws IOException {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length);
+            if (utf8.length > bytes.length - count) flushBuffer();
+            if (utf8.length > bytes.length) {
+                crc.update(utf8);
+                write(ByteBuffer.wrap(utf8));
+            } else {
+                System.arraycopy(utf8, 0, bytes, count, utf8.length);
+                count += utf8.length;
+            }
+        }
+
+        // Appends the checksum of everything so far and forces the file to disk
+        void finish() throws IOException {
+            flushBuffer();
+            int sum = (int) crc.getValue();
+            for (int shift = 24; shift >= 0; shift -= 8) bytes[count++] = (byte) (sum >>> shift);
+            write(view.clear().limit(count));
+            count = 0;
+            channel.force(true);
+        }
+
+        private void flushBuffer() throws IOException {
+            crc.update(bytes, 0, count);
+            write(view.clear().limit(count));
+            count = 0;
+        }
+
+        private void write(ByteBuffer buf) throws IOException {
+            while (buf.hasRemaining()) channel.write(buf);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    static final class BinaryIn {
+        private final ByteBuffer buf;
+        private byte[] scratch = new byte[256];
+
+        BinaryIn(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        long varint() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buf.get();
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return v;
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        int varintInt() throws IOException {
+            long v = varint();
+            if (v < 0 || v > Integer.MAX_VALUE) throw new IOException("Malformed length " + v);
+            return (int) v;
+        }
+
+        String string() throws IOException {
+            int length = varintInt();
+            if (length > scratch.length) scratch = new byte[Math.max(length, scratch.length * 2)];
+            buf.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}//End Class
@@ -1,38 +1,1153 @@
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.format.TextStyle;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 public class CalendarSystem {
 
-    private final Map<LocalDate, List<CalendarEvent>> eventMap = new HashMap<>();
+    //Interval tree ordered by start, so range and "what overlaps this day" queries are logarithmic.
+    //Multi-day events live in one node and still show up on every day they cover.
+    private final EventIntervalTree events = new EventIntervalTree();
+    //Readers never lock: the tree publishes immutable snapshots. Writers take this lock so an import thread
+    //and the EDT can't interleave path copies. Bulk imports should use addEvents to take it once per batch.
+    //What a reader may touch without it, field by field (anything not listed is read under the lock):
+    //  events, byTitle/byLocation groups, archive   immutable trees/columns behind a volatile (stored() pairs
+    //                                               events and archive consistently through layoutGen)
+    //  byId, titleKeys/locationKeys, searchIndex,   concurrent maps/sets of immutable CalendarEvents, Changes
+    //  changes, monthCache                          and MonthSummaries; a bulk replace can be seen half done
+    //  publishedDayCounts                           frozen int[] copies, never written after they are put
+    //  fieldIndexStale, searchIndexStale, journal,  volatile; snapshotFile is only read by whoever saw journal
+    //  modSeq, changeFloor, monthCacheGen, layoutGen  set, so it is published by that volatile write
+    //Guarded by this lock on read and write: dayCounts, changeSeqById, loadedFiles.
+    private final ReentrantLock writeLock = new ReentrantLock();
+    //id -> event, so lookups by id don't walk the tree. Ids are unique: adding an event whose id is already
+    //stored replaces the old one (re-imported ICS UIDs).
+    private final Map<String, CalendarEvent> byId = new ConcurrentHashMap<>();
+    //Case folded title / location -> events, kept in sync on every add and remove. Each group is a tree of
+    //its own, so it is in start order and can be paged by rank like the main one (see agenda())
+    private final Map<String, EventIntervalTree> byTitle = new ConcurrentHashMap<>();
+    private final Map<String, EventIntervalTree> byLocation = new ConcurrentHashMap<>();
+    //The keys of byTitle/byLocation in order, for the agenda's title and location sorting (see agenda())
+    private final NavigableSet<String> titleKeys = new ConcurrentSkipListSet<>();
+    private final NavigableSet<String> locationKeys = new ConcurrentSkipListSet<>();
+    //Set by loadSnapshot: the title/location indexes are rebuilt on first use, like the keyword index
+    private volatile boolean fieldIndexStale;
+    //Word -> event ids over title, description and location, for SearchPanel
+    private final SearchIndex searchIndex = new SearchIndex(byId::get);
+    //Set by loadSnapshot: the keyword index is rebuilt on the first search instead of slowing down startup
+    private volatile boolean searchIndexStale;
+    //Write-ahead journal + snapshot, set by openStore. Every edit is journaled under writeLock so the log has
+    //the same order as the edits; durability is waited for after the lock is released (group commit).
+    private volatile EventJournal journal;
+    private Path snapshotFile;
+    //Snapshots loaded while the store was open (journaled as one LOAD record that names them), deleted once a
+    //compaction has folded them into snapshotFile. Guarded by writeLock.
+    private final List<Path> loadedFiles = new ArrayList<>();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final Object compactionLock = new Object();
+    static final long COMPACT_THRESHOLD = 64L << 20; // journal bytes before it is folded into the snapshot
+    static final int PROGRESS_EVERY = 4096;          // events between progress callbacks on long exports
+    //Change log for delta exports: every add/update/remove gets the next sequence number, and only the latest
+    //change per id is kept (removals as tombstones), so the log is sorted by sequence and a delta since a
+    //watermark is one tailMap. Seeded from the clock in microseconds so numbers keep rising across restarts.
+    //Bounded: past CHANGE_LOG_LIMIT entries the oldest are dropped and changeFloor moves up; bulk loads
+    //(snapshots, clear, huge imports) reset the log instead of logging each event. A watermark below the
+    //floor gets a full export (see getChangesSince).
+    private final ConcurrentSkipListMap<Long, Change> changes = new ConcurrentSkipListMap<>();
+    private final Map<String, Long> changeSeqById = new HashMap<>(); // guarded by writeLock
+    private volatile long modSeq = System.currentTimeMillis() * 1000;
+    private volatile long changeFloor = modSeq;
+    static final int CHANGE_LOG_LIMIT = 1 << 16;
+    //Month view summaries by year*12 + month-1. A mutation drops only the months its event touches, and
+    //bumps monthCacheGen so a summary built while it happened is not kept (see getMonthSummary).
+    private final Map<Integer, MonthSummary> monthCache = new ConcurrentHashMap<>();
+    private volatile long monthCacheGen;
+    static final int TITLES_PER_DAY = 8;
+    static final int MONTH_CACHE_LIMIT = 600; // 50 years of months
+    //Events per day for the year heatmap: one int[366] per year (index day-of-year - 1), adjusted by +1/-1 for
+    //every day an event touches as it is added or removed. Those arrays are the writers' own (writeLock).
+    //Readers only see frozen copies in publishedDayCounts: an edit drops the slot of each year it touches,
+    //and the next reader of that year copies it under the lock and publishes the copy (see getDayCounts).
+    private final Map<Integer, int[]> dayCounts = new HashMap<>(); // guarded by writeLock
+    private final Map<Integer, int[]> publishedDayCounts = new ConcurrentHashMap<>();
+    //Read-only archive of historic years (see archiveBefore): those events are out of the tree and the indexes
+    //and sit in CompactEventStore's primitive columns. Date queries, month/year views, exports, snapshots and
+    //getEvent read both; keyword search, title/location lookups and the agenda cover the live events only.
+    //Editing an archived event brings it back into the tree first (thawLocked). A move between the two bumps
+    //layoutGen before and after, so a reader can tell it caught one half done (see stored()).
+    private volatile CompactEventStore archive = CompactEventStore.EMPTY;
+    private volatile long layoutGen;
     private final Scanner scanner = new Scanner(System.in);
     private final DateTimeFormatter dtFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
 
     //basic helper functions
-    public Map<LocalDate, List<CalendarEvent>> getEventMap(){return eventMap;}
-    // Get events on a specific date
-    public List<CalendarEvent> getEventsForDate(LocalDate date) { return eventMap.getOrDefault(date, List.of());}
+    // Get events on a specific date, including ones that started earlier and run into it
+    public List<CalendarEvent> getEventsForDate(LocalDate date) {
+        long from = date.toEpochDay() * 24 * 60;
+        return stored().overlapping(from, from + 24 * 60);
+    }
+    public boolean hasEventsOn(LocalDate date) {
+        long from = date.toEpochDay() * 24 * 60;
+        return stored().anyOverlapping(from, from + 24 * 60);
+    }
 
     private static void println(String s){ System.out.println(s);}
-    public List<CalendarEvent> getAllEvents() { return eventMap.values().stream().flatMap(List::stream).toList();}
+    public int size() {
+        return stored().size();
+    }
+
+    public List<CalendarEvent> getAllEvents() {
+        Stored stored = stored();
+        List<CalendarEvent> all = new ArrayList<>(stored.size());
+        stored.forEach(all::add);
+        return all;
+    }
 
-    // Add a full event
+    // Add a full event (a removal marker removes it instead)
     public void addEvent(CalendarEvent event) {
-        LocalDate date = event.getStart().toLocalDate();
-        eventMap.computeIfAbsent(date, d -> new ArrayList<>()).add(event);
+        if (event.isRemoval()) {
+            removeEvent(event.getId());
+            return;
+        }
+        long seq;
+        writeLock.lock();
+        try {
+            if (event.sameContent(getEvent(event.getId()))) return; // nothing to store, log or report
+            seq = logAdd(event); // journaled first: if the journal has failed, memory stays as it was
+            thawLocked(List.of(event.getId()));
+            removeLocked(byId.get(event.getId()));
+            events.add(event);
+            indexLocked(event);
+        } finally {
+            writeLock.unlock();
+        }
+        commit(seq);
+    }
+
+    /**
+     * Add a batch in one go (imports). Upserts by id: an event whose id is already stored replaces it,
+     * one that is identical to what's stored is dropped, so re-importing a feed only touches what changed.
+     * Ids are UIDs where the file has them and content hashes where it doesn't (CalendarEvent.withContentId).
+     * Removal markers (CalendarEvent.removal, from delta files) remove their id. Readers keep seeing the old
+     * snapshot until the whole batch is in. Returns {added, updated, unchanged, removed}.
+     */
+    public int[] addEvents(Collection<CalendarEvent> batch) {
+        Map<String, CalendarEvent> unique = new LinkedHashMap<>(batch.size() * 4 / 3 + 1);
+        for (CalendarEvent e : batch) unique.put(e.getId(), e); // last one wins inside a batch too
+        List<CalendarEvent> changed = new ArrayList<>(unique.size());
+        List<String> removed = new ArrayList<>();
+        int added = 0, updated = 0, markers = 0;
+        long seq = 0;
+        writeLock.lock();
+        try {
+            List<String> archived = new ArrayList<>(); // stored in the archive and about to change
+            for (CalendarEvent e : unique.values()) {
+                CalendarEvent old = byId.get(e.getId());
+                if (old == null && archive.size() > 0 && (old = getEvent(e.getId())) != null && !e.sameContent(old)) {
+                    archived.add(e.getId());
+                }
+                if (e.isRemoval()) {
+                    markers++;
+                    if (old != null) removed.add(e.getId());
+                    continue;
+                }
+                if (old == null) added++;
+                else if (e.sameContent(old)) continue;
+                else updated++;
+                changed.add(e);
+            }
+            thawLocked(archived);
+            if (!changed.isEmpty()) {
+                for (CalendarEvent e : changed) seq = logAdd(e);
+                for (CalendarEvent e : changed) removeLocked(byId.get(e.getId()));
+                events.addAll(changed);
+                indexFieldsLocked(changed, changed.size() < CHANGE_LOG_LIMIT);
+                if (!searchIndexStale) searchIndex.addAll(changed);
+            }
+            for (String id : removed) {
+                seq = logRemove(id);
+                removeLocked(byId.get(id));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        commit(seq);
+        return new int[] {added, updated, unique.size() - added - updated - markers, removed.size()};
+    }
+
+    // Live or archived; an archived event comes back as a fresh view
+    public CalendarEvent getEvent(String id) {
+        CalendarEvent e = byId.get(id);
+        if (e != null) return e;
+        CompactEventStore a = archive; // thawing puts the event in byId before it drops it from here
+        int row = a.size() == 0 ? -1 : a.indexOf(id);
+        return row < 0 ? null : a.get(row);
     }
 
-    // Remove event by title (for demo simplicity)
+    // Remove by id: O(1) to find it, O(log N) to unlink it from the tree
+    public boolean removeEvent(String id) {
+        long seq = 0;
+        boolean removed;
+        writeLock.lock();
+        try {
+            thawLocked(List.of(id));
+            CalendarEvent e = byId.get(id);
+            if (e != null) seq = logRemove(id);
+            removed = removeLocked(e);
+        } finally {
+            writeLock.unlock();
+        }
+        commit(seq);
+        return removed;
+    }
+
+    // Replace the fields of an existing event, keeping its id. Returns false if there is no such event.
+    public boolean updateEvent(String id, String title, String description, String location,
+                               LocalDateTime start, LocalDateTime end) {
+        long seq;
+        writeLock.lock();
+        try {
+            thawLocked(List.of(id));
+            CalendarEvent old = byId.get(id);
+            if (old == null) return false;
+            CalendarEvent updated = new CalendarEvent(id, title, description, location,
+                    CalendarEvent.toEventMinute(start), CalendarEvent.toEventMinute(end));
+            seq = logAdd(updated);
+            removeLocked(old);
+            events.add(updated);
+            indexLocked(updated);
+        } finally {
+            writeLock.unlock();
+        }
+        commit(seq);
+        return true;
+    }
+
+    // Remove event by title (for demo simplicity). Goes through the title index, no scan.
     public void removeEvent(LocalDate date, String title) {
-        List<CalendarEvent> events = eventMap.getOrDefault(date, List.of());
-        boolean removed = events.removeIf(e -> e.getTitle().equalsIgnoreCase(title));
+        boolean removed = false;
+        long from = CalendarEvent.toEpochMinute(date.atStartOfDay());
+        long to = from + 24 * 60;
+        long seq = 0;
+        writeLock.lock();
+        try {
+            List<String> archived = new ArrayList<>();
+            for (CalendarEvent e : archive.startingBetween(from, to)) {
+                if (normalizeKey(e.getTitle()).equals(normalizeKey(title))) archived.add(e.getId());
+            }
+            thawLocked(archived);
+            for (CalendarEvent e : findEventsByTitle(title)) {
+                if (e.getStartMinute() >= from && e.getStartMinute() < to && byId.get(e.getId()) == e) {
+                    seq = logRemove(e.getId());
+                    removed = removeLocked(e);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        commit(seq);
         if (removed) println("Event removed.");
         else println("Event not found.");
     }
 
+    // All events with this title, ignoring case. O(1) + result size, sorted by start.
+    public List<CalendarEvent> findEventsByTitle(String title) {
+        if (fieldIndexStale) rebuildFieldIndex();
+        return listOf(byTitle.get(normalizeKey(title)));
+    }
+
+    // All events at this location, ignoring case. O(1) + result size, sorted by start.
+    public List<CalendarEvent> findEventsByLocation(String location) {
+        if (fieldIndexStale) rebuildFieldIndex();
+        return listOf(byLocation.get(normalizeKey(location)));
+    }
+
+    private static List<CalendarEvent> listOf(EventIntervalTree group) {
+        List<CalendarEvent> out = new ArrayList<>(group == null ? 0 : group.size());
+        if (group != null) group.forEach(out::add);
+        return out;
+    }
+
+    /**
+     * Keyword search through the inverted index. Every word in keyword has to start a word of the title or
+     * description, every word in location has to start a word of the location. Best matches come first.
+     * With both blank you get everything, sorted by start, as a read-only view over a snapshot of the tree
+     * (rows are looked up by rank when asked for, the store is not copied).
+     */
+    public List<CalendarEvent> search(String keyword, String location) {
+        if ((keyword == null || keyword.isBlank()) && (location == null || location.isBlank())) return events.asList();
+        if (searchIndexStale) rebuildSearchIndex();
+        return searchIndex.search(keyword, location);
+    }
+
+    // Same ranking, only the first limit results (a search-as-you-type page). Blank: the first limit by start.
+    public List<CalendarEvent> search(String keyword, String location, int limit) {
+        if ((keyword == null || keyword.isBlank()) && (location == null || location.isBlank())) {
+            List<CalendarEvent> first = new ArrayList<>(Math.min(limit, 1024));
+            Iterator<CalendarEvent> it = events.iterator();
+            while (first.size() < limit && it.hasNext()) first.add(it.next());
+            return first;
+        }
+        if (searchIndexStale) rebuildSearchIndex();
+        return searchIndex.search(keyword, location, limit);
+    }
+
+    // The full ranking, with its best firstPage handed to onFirstPage first; the query is scored only once.
+    // Blank: the lazy view over everything, nothing to rank and no first page.
+    public List<CalendarEvent> search(String keyword, String location, int firstPage,
+                                      Consumer<List<CalendarEvent>> onFirstPage) {
+        if ((keyword == null || keyword.isBlank()) && (location == null || location.isBlank())) return events.asList();
+        if (searchIndexStale) rebuildSearchIndex();
+        return searchIndex.search(keyword, location, firstPage, onFirstPage);
+    }
+
+    //============Index upkeep. Callers hold writeLock============
+    private void indexLocked(CalendarEvent e) {
+        indexFieldsLocked(e);
+        if (!searchIndexStale) searchIndex.add(e);
+    }
+
+    private void indexFieldsLocked(CalendarEvent e) {
+        recordChangeLocked(e.getId(), e);
+        invalidateMonthsLocked(e);
+        countDaysLocked(e, 1);
+        byId.put(e.getId(), e);
+        if (fieldIndexStale) return;
+        addToIndex(byTitle, titleKeys, normalizeKey(e.getTitle()), List.of(e));
+        addToIndex(byLocation, locationKeys, normalizeKey(e.getLocation()), List.of(e));
+    }
+
+    // Batch version: events from one import/snapshot share title and location objects, fold each once, and
+    // each title/location group goes into its tree in one addAll
+    // logEach false (a bulk load) resets the change log rather than logging every event
+    private void indexFieldsLocked(Collection<CalendarEvent> batch, boolean logEach) {
+        boolean perEvent = batch.size() < 4096; // past that, dropping every month is cheaper than working out which
+        if (!perEvent) invalidateAllMonthsLocked();
+        if (!logEach) resetChangeLogLocked();
+        for (CalendarEvent e : batch) {
+            if (logEach) recordChangeLocked(e.getId(), e);
+            if (perEvent) invalidateMonthsLocked(e);
+            countDaysLocked(e, 1);
+            byId.put(e.getId(), e);
+        }
+        if (!fieldIndexStale) groupIndexLocked(batch, true);
+    }
+
+    // Title/location index upkeep for a batch: each key folded once, each group changed in one go
+    private void groupIndexLocked(Collection<CalendarEvent> batch, boolean add) {
+        Map<String, String> keys = new IdentityHashMap<>();
+        Map<String, List<CalendarEvent>> titles = new HashMap<>(), locations = new HashMap<>();
+        for (CalendarEvent e : batch) {
+            titles.computeIfAbsent(keys.computeIfAbsent(e.getTitle(), CalendarSystem::normalizeKey), k -> new ArrayList<>()).add(e);
+            locations.computeIfAbsent(keys.computeIfAbsent(e.getLocation(), CalendarSystem::normalizeKey), k -> new ArrayList<>()).add(e);
+        }
+        if (add) {
+            titles.forEach((key, group) -> addToIndex(byTitle, titleKeys, key, group));
+            locations.forEach((key, group) -> addToIndex(byLocation, locationKeys, key, group));
+        } else {
+            titles.forEach((key, group) -> removeFromIndex(byTitle, titleKeys, key, group));
+            locations.forEach((key, group) -> removeFromIndex(byLocation, locationKeys, key, group));
+        }
+    }
+
+    private void rebuildFieldIndex() {
+        writeLock.lock();
+        try {
+            if (!fieldIndexStale) return;
+            groupIndexLocked(byId.values(), true);
+            fieldIndexStale = false;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void rebuildSearchIndex() {
+        writeLock.lock();
+        try {
+            if (!searchIndexStale) return;
+            searchIndex.clear();
+            searchIndex.addAll(byId.values());
+            searchIndexStale = false;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Unlinks an event from the tree and every index, false if it was not stored
+    private boolean removeLocked(CalendarEvent e) {
+        if (e == null || !events.remove(e)) return false;
+        recordChangeLocked(e.getId(), CalendarEvent.removal(e.getId(), e.getStartMinute()));
+        invalidateMonthsLocked(e);
+        countDaysLocked(e, -1);
+        byId.remove(e.getId(), e);
+        if (!fieldIndexStale) {
+            removeFromIndex(byTitle, titleKeys, normalizeKey(e.getTitle()), List.of(e));
+            removeFromIndex(byLocation, locationKeys, normalizeKey(e.getLocation()), List.of(e));
+        }
+        if (!searchIndexStale) searchIndex.remove(e);
+        return true;
+    }
+
+    private static void addToIndex(Map<String, EventIntervalTree> index, NavigableSet<String> keys, String key,
+                                   Collection<CalendarEvent> group) {
+        index.computeIfAbsent(key, k -> {
+            keys.add(k);
+            return new EventIntervalTree();
+        }).addAll(group);
+    }
+
+    private static void removeFromIndex(Map<String, EventIntervalTree> index, NavigableSet<String> keys, String key,
+                                        Collection<CalendarEvent> gone) {
+        index.computeIfPresent(key, (k, group) -> {
+            group.removeAll(gone);
+            if (!group.isEmpty()) return group;
+            keys.remove(k);
+            return null;
+        });
+    }
+
+//===================================ARCHIVE====================================
+    /**
+     * Read-only mode for historic years: every event that is over by the start of cutoff leaves the tree and
+     * the indexes for the archive's primitive columns (see CompactEventStore). The calendar itself doesn't
+     * change (no change log entry, no journal record; day counts and month summaries stay), only the heap
+     * those years take. Returns how many events were archived.
+     */
+    public int archiveBefore(LocalDate cutoff) {
+        long limit = cutoff.toEpochDay() * 24 * 60;
+        writeLock.lock();
+        try {
+            List<CalendarEvent> old = new ArrayList<>();
+            for (CalendarEvent e : events.snapshot()) {
+                if (e.getStartMinute() >= limit) break;
+                if (e.getEndMinute() <= limit) old.add(e);
+            }
+            if (old.isEmpty()) return 0;
+            layoutGen++;
+            try {
+                archive = archive.withAll(old);
+                events.removeAll(old);
+                for (CalendarEvent e : old) {
+                    byId.remove(e.getId(), e);
+                    if (!searchIndexStale) searchIndex.remove(e);
+                }
+                if (!fieldIndexStale) groupIndexLocked(old, false);
+            } finally {
+                layoutGen++;
+            }
+            return old.size();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public int archivedSize() {
+        return archive.size();
+    }
+
+    // Callers hold writeLock. Brings these ids back from the archive into the tree and the indexes, so the
+    // normal edit path can change them; ids that aren't archived are ignored. Not a change, nothing is logged.
+    private void thawLocked(Collection<String> ids) {
+        CompactEventStore a = archive;
+        if (a.size() == 0 || ids.isEmpty()) return;
+        List<CalendarEvent> back = new ArrayList<>();
+        for (String id : ids) {
+            int row = a.indexOf(id);
+            if (row >= 0 && !byId.containsKey(id)) back.add(a.get(row));
+        }
+        if (back.isEmpty()) return;
+        layoutGen++;
+        try {
+            events.addAll(back);
+            for (CalendarEvent e : back) {
+                byId.put(e.getId(), e);
+                if (!searchIndexStale) searchIndex.add(e);
+            }
+            if (!fieldIndexStale) groupIndexLocked(back, true);
+            archive = a.without(ids);
+        } finally {
+            layoutGen++;
+        }
+    }
+
+    // The tree and the archive as one consistent pair of frozen views. O(1) unless a move between the
+    // two is under way, then it waits for the move to finish.
+    private Stored stored() {
+        long gen = layoutGen;
+        if ((gen & 1) == 0) {
+            Stored stored = new Stored(events.snapshot(), archive);
+            if (layoutGen == gen) return stored;
+        }
+        writeLock.lock();
+        try {
+            return new Stored(events.snapshot(), archive);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Everything stored, live and archived, read as one start-ordered calendar
+    private static final class Stored implements Iterable<CalendarEvent> {
+        final EventIntervalTree live;
+        final CompactEventStore archived;
+
+        Stored(EventIntervalTree live, CompactEventStore archived) {
+            this.live = live;
+            this.archived = archived;
+        }
+
+        int size() { return live.size() + archived.size(); }
+
+        List<CalendarEvent> overlapping(long from, long to) {
+            return merge(live.overlapping(from, to), archived.size() == 0 ? List.of() : archived.overlapping(from, to));
+        }
+
+        List<CalendarEvent> startingBetween(long from, long to) {
+            return merge(live.startingBetween(from, to), archived.size() == 0 ? List.of() : archived.startingBetween(from, to));
+        }
+
+        boolean anyOverlapping(long from, long to) {
+            return live.anyOverlapping(from, to) || archived.anyOverlapping(from, to);
+        }
+
+        // Two start-ordered lists as one, live first on equal starts
+        private static List<CalendarEvent> merge(List<CalendarEvent> a, List<CalendarEvent> b) {
+            if (b.isEmpty()) return a;
+            if (a.isEmpty()) return b;
+            List<CalendarEvent> out = new ArrayList<>(a.size() + b.size());
+            int i = 0, j = 0;
+            while (i < a.size() || j < b.size()) {
+                if (j == b.size() || (i < a.size() && a.get(i).getStartMinute() <= b.get(j).getStartMinute())) out.add(a.get(i++));
+                else out.add(b.get(j++));
+            }
+            return out;
+        }
+
+        @Override
+        public Iterator<CalendarEvent> iterator() {
+            if (archived.size() == 0) return live.iterator();
+            Iterator<CalendarEvent> a = live.iterator(), b = archived.iterator();
+            return new Iterator<>() {
+                private CalendarEvent nextA = a.hasNext() ? a.next() : null, nextB = b.hasNext() ? b.next() : null;
+
+                @Override
+                public boolean hasNext() { return nextA != null || nextB != null; }
+
+                @Override
+                public CalendarEvent next() {
+                    CalendarEvent out;
+                    if (nextB == null || (nextA != null && nextA.getStartMinute() <= nextB.getStartMinute())) {
+                        if (nextA == null) throw new NoSuchElementException();
+                        out = nextA;
+                        nextA = a.hasNext() ? a.next() : null;
+                    } else {
+                        out = nextB;
+                        nextB = b.hasNext() ? b.next() : null;
+                    }
+                    return out;
+                }
+            };
+        }
+    }
+
+    // Case folded, trimmed key for the title/location indexes
+    static String normalizeKey(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns every event whose start falls in [from, to), already sorted by start time.
+     * Uses the start index so the cost is O(log N + k) instead of sorting everything.
+     */
+    public List<CalendarEvent> findEventsBetween(LocalDateTime from, LocalDateTime to) {
+        return stored().startingBetween(CalendarEvent.toEpochMinute(from), CalendarEvent.toEpochMinute(to));
+    }//End findEventsBetween
+
+    /**
+     * Returns every event overlapping [from, to), sorted by start time. Unlike findEventsBetween this
+     * also picks up events that began before the window and are still running inside it.
+     */
+    public List<CalendarEvent> findEventsOverlapping(LocalDateTime from, LocalDateTime to) {
+        return stored().overlapping(CalendarEvent.toEpochMinute(from), CalendarEvent.toEpochMinute(to));
+    }//End findEventsOverlapping
+
+//===================================MONTH SUMMARIES AND DAY COUNTS====================================
+    // What a month view needs per day: how many events, whether one is an "OFF" day, the first few titles
+    public static final class MonthSummary {
+        public final YearMonth month;
+        private final int[] counts;     // [day - 1]
+        private final long offDays;     // bit day - 1
+        private final String[] titles;  // TITLES_PER_DAY slots per day, in start order
+
+        MonthSummary(YearMonth month, int[] counts, long offDays, String[] titles) {
+            this.month = month;
+            this.counts = counts;
+            this.offDays = offDays;
+            this.titles = titles;
+        }
+
+        public int days() { return counts.length; }
+        public int count(int day) { return counts[day - 1]; }
+        public boolean isOffDay(int day) { return (offDays >>> (day - 1) & 1) != 0; }
+        public int titleCount(int day) { return Math.min(counts[day - 1], TITLES_PER_DAY); }
+        public String title(int day, int i) { return titles[(day - 1) * TITLES_PER_DAY + i]; }
+    }
+
+    /**
+     * Per-day counts, off-day flags and first titles for a month. Served from the cache in O(days); on a
+     * miss it is built from one overlapping query for the month (events spread over the days they touch,
+     * same rule as getEventsForDate) and cached until an edit touches that month.
+     */
+    public MonthSummary getMonthSummary(YearMonth month) {
+        int key = month.getYear() * 12 + month.getMonthValue() - 1;
+        MonthSummary summary = monthCache.get(key);
+        if (summary != null) return summary;
+
+        long gen = monthCacheGen;
+        summary = buildMonthSummary(month);
+        if (monthCache.size() >= MONTH_CACHE_LIMIT) monthCache.clear();
+        monthCache.put(key, summary);
+        if (monthCacheGen != gen) monthCache.remove(key, summary); // an edit raced the build, may be stale
+        return summary;
+    }
+
+    private MonthSummary buildMonthSummary(YearMonth month) {
+        LocalDate first = month.atDay(1);
+        int days = month.lengthOfMonth();
+        long firstDay = first.toEpochDay();
+        int[] counts = new int[days];
+        long offDays = 0;
+        String[] titles = new String[days * TITLES_PER_DAY];
+        for (CalendarEvent e : stored().overlapping(firstDay * 24 * 60, (firstDay + days) * 24 * 60)) {
+            long from = Math.max(Math.floorDiv(e.getStartMinute(), 24 * 60), firstDay);
+            long to = Math.min(lastDayOf(e), firstDay + days - 1);
+            boolean off = e.getTitle().equalsIgnoreCase("OFF");
+            for (long d = from; d <= to; d++) {
+                int i = (int) (d - firstDay);
+                if (counts[i] < TITLES_PER_DAY) titles[i * TITLES_PER_DAY + counts[i]] = e.getTitle();
+                counts[i]++;
+                if (off) offDays |= 1L << i;
+            }
+        }
+        return new MonthSummary(month, counts, offDays, titles);
+    }
+
+    // Epoch day the event ends on: an event ending at midnight isn't on the next day, a zero-length one is on its start day
+    private static long lastDayOf(CalendarEvent e) {
+        return e.getEndMinute() > e.getStartMinute()
+                ? Math.floorDiv(e.getEndMinute() - 1, 24 * 60)
+                : Math.floorDiv(e.getStartMinute(), 24 * 60);
+    }
+
+    private void invalidateMonthsLocked(CalendarEvent e) {
+        monthCacheGen++;
+        if (monthCache.isEmpty()) return;
+        int from = monthKey(Math.floorDiv(e.getStartMinute(), 24 * 60));
+        int to = monthKey(lastDayOf(e));
+        if (to - from < 24) {
+            for (int key = from; key <= to; key++) monthCache.remove(key);
+        } else {
+            monthCache.keySet().removeIf(key -> key >= from && key <= to); // very long event, walk the cache instead
+        }
+    }
+
+    private void invalidateAllMonthsLocked() {
+        monthCacheGen++;
+        monthCache.clear();
+    }
+
+    // Events on each day of the year (Jan 1 first), a copy. Kept up to date by every edit, no traversal here;
+    // the lock is only taken for the first read of a year after an edit touched it.
+    public int[] getDayCounts(int year) {
+        int length = Year.isLeap(year) ? 366 : 365;
+        int[] counts = publishedDayCounts.get(year);
+        if (counts == null) {
+            writeLock.lock();
+            try {
+                int[] live = dayCounts.get(year);
+                counts = live == null ? new int[366] : live.clone();
+                publishedDayCounts.put(year, counts); // no edit can drop the slot before this, we hold the lock
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        return Arrays.copyOf(counts, length);
+    }
+
+    private void countDaysLocked(CalendarEvent e, int delta) {
+        long day = Math.floorDiv(e.getStartMinute(), 24 * 60), last = lastDayOf(e);
+        LocalDate first = LocalDate.ofEpochDay(day);
+        int year = first.getYear(), index = first.getDayOfYear() - 1, length = first.lengthOfYear();
+        int[] counts = yearCountsLocked(year);
+        while (true) {
+            counts[index] += delta;
+            if (++day > last) return;
+            if (++index == length) { // next year
+                year++;
+                index = 0;
+                length = Year.isLeap(year) ? 366 : 365;
+                counts = yearCountsLocked(year);
+            }
+        }
+    }
+
+    // The writers' array for a year; readers' published copy of it is stale from here on
+    private int[] yearCountsLocked(int year) {
+        publishedDayCounts.remove(year);
+        return dayCounts.computeIfAbsent(year, y -> new int[366]);
+    }
+
+    private static int monthKey(long epochDay) {
+        LocalDate d = LocalDate.ofEpochDay(epochDay);
+        return d.getYear() * 12 + d.getMonthValue() - 1;
+    }
+
+//===================================AGENDA CURSORS====================================
+    public enum AgendaOrder { START, TITLE, LOCATION }
+
+    /**
+     * Pages through the whole store in one order without copying it. START pages a frozen snapshot of the
+     * tree by rank (O(log N) per window). TITLE/LOCATION walk the sorted index keys, skipping whole groups
+     * by size, and page the group they land in by rank from a frozen snapshot of its tree, so nothing is
+     * copied or sorted however big a group is. The walk over groups follows live edits, so rows can shift
+     * under a concurrent change. A cursor remembers where its last window ended, so scrolling on is cheap.
+     * Not thread-safe: one cursor per view.
+     */
+    public abstract static class AgendaCursor {
+        public abstract int size();
+        public abstract List<CalendarEvent> window(int from, int count);
+        // Row of the first event starting at or after minute, or -1 if this order can't tell
+        public int rowAt(long minute) { return -1; }
+    }
+
+    public AgendaCursor agenda(AgendaOrder order) {
+        if (order != AgendaOrder.START && fieldIndexStale) rebuildFieldIndex();
+        if (order == AgendaOrder.START) {
+            EventIntervalTree frozen = events.snapshot();
+            return new AgendaCursor() {
+                @Override public int size() { return frozen.size(); }
+                @Override public List<CalendarEvent> window(int from, int count) { return frozen.window(from, count); }
+                @Override public int rowAt(long minute) { return frozen.countStartingBefore(minute); }
+            };
+        }
+        return order == AgendaOrder.TITLE
+                ? new GroupedCursor(byTitle, titleKeys, events.size())
+                : new GroupedCursor(byLocation, locationKeys, events.size());
+    }
+
+    private static final class GroupedCursor extends AgendaCursor {
+        private final Map<String, EventIntervalTree> index;
+        private final NavigableSet<String> keys;
+        private final int size;
+        // Where the last window was: its group, the row that group starts at, and the group's snapshot
+        private String groupKey;
+        private int groupRow;
+        private EventIntervalTree group;
+
+        GroupedCursor(Map<String, EventIntervalTree> index, NavigableSet<String> keys, int size) {
+            this.index = index;
+            this.keys = keys;
+            this.size = size;
+        }
+
+        @Override
+        public int size() { return size; }
+
+        @Override
+        public List<CalendarEvent> window(int from, int count) {
+            List<CalendarEvent> out = new ArrayList<>(Math.min(count, 1024));
+            String key = groupKey;
+            int row = groupRow;
+            EventIntervalTree tree = group;
+            if (key == null || from < row) { // scrolled back, or first call: from the top
+                key = keys.isEmpty() ? null : keys.first();
+                row = 0;
+                tree = null;
+            }
+            while (key != null && out.size() < count) {
+                if (tree == null) {
+                    EventIntervalTree live = index.get(key);
+                    tree = live == null ? new EventIntervalTree() : live.snapshot(); // O(1), shares the nodes
+                }
+                int at = from + out.size() - row, n = tree.size();
+                if (at < n) {
+                    groupKey = key;
+                    groupRow = row;
+                    group = tree;
+                    out.addAll(tree.window(Math.max(0, at), count - out.size()));
+                }
+                row += n;
+                key = keys.higher(key);
+                tree = null;
+            }
+            return out;
+        }
+    }
+
+//===================================CHANGE LOG====================================
+    // One entry of the change log: the event as it is now, or if it was removed a tombstone, whose event is
+    // a removal marker (CalendarEvent.removal) keeping the start a cancellation needs
+    public static final class Change {
+        public final long seq;
+        public final String id;
+        public final CalendarEvent event;
+
+        Change(long seq, String id, CalendarEvent event) {
+            this.seq = seq;
+            this.id = id;
+            this.event = event;
+        }
+
+        public boolean isRemoval() { return event.isRemoval(); }
+    }
+
+    // Watermark covering every change made so far; pass it to the next getChangesSince/exportChangesSince
+    public long getModSeq() {
+        return modSeq;
+    }
+
+    // Sequence number of the last change to this id (add, update or removal). An event whose entry was
+    // pruned or came in with a bulk load reports the floor; -1 if the id isn't known at all.
+    public long getModSeq(String id) {
+        writeLock.lock();
+        try {
+            Long seq = changeSeqById.get(id);
+            return seq != null ? seq : getEvent(id) != null ? changeFloor : -1;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Oldest watermark the change log can still answer with a delta
+    public long getChangeFloor() {
+        return changeFloor;
+    }
+
+    int changeLogSize() {
+        return changes.size();
+    }
+
+    /**
+     * Latest change of every event touched after watermark and up to upTo, in sequence order.
+     * O(log N + changes). Something changed again after upTo is left for the next call.
+     * A watermark older than getChangeFloor() can't be answered from the log: you get every current event
+     * (in start order, seq = the floor) plus the tombstones still kept, and should replace, not patch.
+     */
+    public List<Change> getChangesSince(long watermark, long upTo) {
+        List<Change> out = new ArrayList<>();
+        long floor = changeFloor;
+        if (watermark < floor) {
+            for (CalendarEvent e : stored()) out.add(new Change(floor, e.getId(), e));
+            for (Change c : changes.headMap(upTo, true).values()) if (c.isRemoval()) out.add(c);
+            return out;
+        }
+        out.addAll(changes.subMap(watermark, false, upTo, true).values());
+        return out;
+    }
+
+    /**
+     * Writes only what changed after watermark: current versions of added/updated events and, for removed
+     * ones, a cancellation (ICS: VEVENT with DTSTART, SEQUENCE and STATUS:CANCELLED in a METHOD:CANCEL
+     * calendar after the updates; JSON: {"id": ..., "deleted": true}). The readers turn those back into removals.
+     * Returns the watermark to use next time. Only ICS and JSON can carry removals. A watermark below
+     * getChangeFloor() gets every current event instead (see getChangesSince).
+     */
+    public long exportChangesSince(long watermark, String filePath, CalendarFormat format) throws IOException {
+        if (format != CalendarFormat.ICS && format != CalendarFormat.JSON) {
+            throw new IllegalArgumentException("Delta export needs a format that can express removals (ICS or JSON), not " + format);
+        }
+        long upTo = modSeq;
+        List<Change> delta = getChangesSince(watermark, upTo);
+        try (EventExporter exporter = format.exporter(ChannelTextWriter.open(Path.of(filePath)))) {
+            for (Change c : delta) if (!c.isRemoval()) exporter.write(c.event);
+            for (Change c : delta) if (c.isRemoval()) exporter.writeRemoved(c.event); // ICS: one METHOD:CANCEL calendar
+        }
+        return upTo;
+    }//End exportChangesSince
+
+    // Callers hold writeLock. Replaces the previous log entry of this id, drops the oldest past the limit.
+    private void recordChangeLocked(String id, CalendarEvent current) {
+        long seq = modSeq + 1;
+        Long previous = changeSeqById.put(id, seq);
+        if (previous != null) changes.remove(previous);
+        changes.put(seq, new Change(seq, id, current));
+        if (changeSeqById.size() > CHANGE_LOG_LIMIT) {
+            Change oldest = changes.pollFirstEntry().getValue();
+            changeSeqById.remove(oldest.id, oldest.seq);
+            changeFloor = oldest.seq; // raised before modSeq, so no reader holds a watermark we can't answer
+        }
+        modSeq = seq; // published last, so a reader that sees seq also sees its entry
+    }
+
+    // Callers hold writeLock. Everything before now is only available as a full export.
+    private void resetChangeLogLocked() {
+        changes.clear();
+        changeSeqById.clear();
+        changeFloor = ++modSeq;
+    }
+
+//===================================SNAPSHOTS====================================
+    // Saves everything to a binary snapshot (see CalendarSnapshot). Edits can go on while it writes.
+    public void saveSnapshot(Path path) throws IOException {
+        CalendarSnapshot.write(path, stored());
+    }
+
+    /**
+     * Replaces the current contents with a saved snapshot. On error nothing is changed. With a store open
+     * the file is copied next to the journal and journaled as one LOAD record naming the copy, not an ADD
+     * per event; the next compaction folds it into the store's snapshot and deletes it. Only the tree, the
+     * id index and the day counts are built here; the title/location and keyword indexes are rebuilt on
+     * first use.
+     */
+    public void loadSnapshot(Path path) throws IOException {
+        EventJournal j = journal;
+        Path source = j == null ? path : keepLoaded(path);
+        List<CalendarEvent> loaded;
+        try {
+            loaded = CalendarSnapshot.read(source);
+        } catch (IOException | RuntimeException e) {
+            if (source != path) Files.deleteIfExists(source);
+            throw e;
+        }
+        long seq = 0;
+        writeLock.lock();
+        try {
+            if (j != null) {
+                seq = j.load(source);
+                loadedFiles.add(source);
+            }
+            replaceLocked(loaded);
+        } finally {
+            writeLock.unlock();
+        }
+        commit(seq);
+    }
+
+    // Callers hold writeLock. The store becomes exactly this snapshot (saved from a store, so ids are unique)
+    private void replaceLocked(List<CalendarEvent> loaded) {
+        clearLocked();
+        searchIndexStale = true;
+        fieldIndexStale = true;
+        events.addAll(loaded);
+        indexFieldsLocked(loaded, false);
+    }
+
+    // Durable copy of a snapshot to load, next to the journal so the LOAD record can name it
+    private Path keepLoaded(Path path) throws IOException {
+        Path copy = Files.createTempFile(snapshotFile.toAbsolutePath().getParent(), "calendar.load-", ".snap");
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(copy, StandardOpenOption.WRITE)) {
+            for (long at = 0, size = in.size(); at < size; ) at += in.transferTo(at, size - at, out);
+            out.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(copy);
+            throw e;
+        }
+        return copy;
+    }
+
+//===================================JOURNAL====================================
+    /**
+     * Makes the calendar persistent in directory: loads calendar.snap, replays calendar.journal on top
+     * and from then on journals every edit. The journal is folded into a fresh snapshot in the background
+     * once it grows past COMPACT_THRESHOLD.
+     */
+    public void openStore(Path directory, EventJournal.FsyncPolicy policy) throws IOException {
+        if (journal != null) throw new IllegalStateException("Store already open");
+        Files.createDirectories(directory);
+        snapshotFile = directory.resolve("calendar.snap");
+        if (Files.exists(snapshotFile)) loadSnapshot(snapshotFile);
+        JournalReplay replay = new JournalReplay();
+        EventJournal opened = EventJournal.open(directory.resolve("calendar.journal"), policy, replay);
+        replay.flushAdds();
+        try (DirectoryStream<Path> loads = Files.newDirectoryStream(directory, "calendar.load-*")) {
+            writeLock.lock();
+            try {
+                for (Path p : loads) loadedFiles.add(p); // referenced by the journal, or left by a crash: next compaction drops them
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        if (opened.hasRotated()) { // a compaction was cut short, finish it now
+            saveSnapshot(snapshotFile);
+            opened.dropRotated();
+        }
+        journal = opened;
+        maybeCompact(); // a journal left long by closeJournal is folded in the background
+    }
+
+    // Makes every journaled edit durable and closes the journal, leaving compaction to the next openStore:
+    // quick enough for a window closing on the EDT. A background compaction that is still running is cut
+    // off with the process; its rotated journal is folded back in on the next open.
+    public void closeJournal() throws IOException {
+        EventJournal j;
+        writeLock.lock(); // not between a compaction's freeze and its rotate
+        try {
+            j = journal;
+            journal = null;
+        } finally {
+            writeLock.unlock();
+        }
+        if (j != null) j.close();
+    }
+
+    // Writes a snapshot of everything and empties the journal, then closes it
+    public void closeStore() throws IOException {
+        EventJournal j = journal;
+        if (j == null) return;
+        compact(j); // waits for a background compaction first
+        journal = null;
+        j.close();
+    }
+
+    // Replays journal records through the normal mutators; runs of adds go in as one batch
+    private class JournalReplay implements EventJournal.Replay {
+        private final List<CalendarEvent> adds = new ArrayList<>();
+
+        @Override
+        public void add(CalendarEvent e) {
+            adds.add(e);
+        }
+
+        @Override
+        public void remove(String id) {
+            flushAdds();
+            removeEvent(id);
+        }
+
+        @Override
+        public void clear() {
+            adds.clear();
+            writeLock.lock();
+            try {
+                clearLocked();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        @Override
+        public void load(Path snapshot) throws IOException {
+            adds.clear();
+            List<CalendarEvent> loaded = CalendarSnapshot.read(snapshot);
+            writeLock.lock();
+            try {
+                replaceLocked(loaded);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        void flushAdds() {
+            if (adds.isEmpty()) return;
+            addEvents(adds);
+            adds.clear();
+        }
+    }
+
+    // Callers hold writeLock and log before touching memory, so an edit the journal refused (it throws once
+    // a write failed) is not applied either. 0 means nothing to wait for.
+    private long logAdd(CalendarEvent e) {
+        EventJournal j = journal;
+        return j == null ? 0 : j.add(e);
+    }
+
+    private long logRemove(String id) {
+        EventJournal j = journal;
+        return j == null ? 0 : j.remove(id);
+    }
+
+    // After releasing writeLock: wait for durability if the policy asks for it, compact if the log is big
+    private void commit(long seq) {
+        EventJournal j = journal;
+        if (j == null || seq == 0) return;
+        try {
+            j.awaitDurable(seq);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not persist edit", e);
+        }
+        maybeCompact();
+    }
+
+    private void maybeCompact() {
+        EventJournal j = journal;
+        if (j == null || j.size() < COMPACT_THRESHOLD || !compacting.compareAndSet(false, true)) return;
+        Thread worker = new Thread(() -> {
+            try {
+                compact(j);
+            } catch (IOException e) {
+                System.err.println("Journal compaction failed: " + e.getMessage());
+            } finally {
+                compacting.set(false);
+            }
+        }, "journal-compaction");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Freeze the tree and rotate the log together, so the snapshot holds exactly the rotated records.
+    // If writing the snapshot fails the rotated file stays; the next compaction folds it back in and retries.
+    private void compact(EventJournal j) throws IOException {
+        synchronized (compactionLock) {
+            Stored frozen;
+            List<Path> folded;
+            writeLock.lock();
+            try {
+                frozen = new Stored(events.snapshot(), archive);
+                j.rotate();
+                folded = new ArrayList<>(loadedFiles);
+                loadedFiles.clear();
+            } finally {
+                writeLock.unlock();
+            }
+            try {
+                CalendarSnapshot.write(snapshotFile, frozen);
+            } catch (IOException | RuntimeException e) {
+                writeLock.lock();
+                try {
+                    loadedFiles.addAll(folded); // the rotated journal still names them
+                } finally {
+                    writeLock.unlock();
+                }
+                throw e;
+            }
+            j.dropRotated();
+            for (Path p : folded) Files.deleteIfExists(p);
+        }
+    }
+
+    private void clearLocked() {
+        layoutGen++;
+        archive = CompactEventStore.EMPTY;
+        layoutGen++;
+        resetChangeLogLocked();
+        invalidateAllMonthsLocked();
+        dayCounts.clear();
+        publishedDayCounts.clear();
+        events.clear();
+        searchIndex.clear();
+        byId.clear();
+        byTitle.clear();
+        byLocation.clear();
+        titleKeys.clear();
+        locationKeys.clear();
+        fieldIndexStale = false;
+    }
+
     // Show monthly calendar
     public void printMonth(int year, int month) {
         LocalDate first = LocalDate.of(year, month, 1);
@@ -42,9 +1157,9 @@ public class CalendarSystem {
         System.out.print("   ".repeat(dayOfWeek));
 
         int daysInMonth = first.lengthOfMonth();
+        MonthSummary summary = getMonthSummary(YearMonth.of(year, month));
         for (int day = 1; day <= daysInMonth; day++) {
-            LocalDate current = LocalDate.of(year, month, day);
-            boolean hasEvent = eventMap.containsKey(current);
+            boolean hasEvent = summary.count(day) > 0;
 
             // Print day number
             System.out.printf("%2d", day);
@@ -67,12 +1182,12 @@ public class CalendarSystem {
 
     // 📋 List all events for a specific date
     public void listEvents(LocalDate date) {
-        List<CalendarEvent> events = eventMap.getOrDefault(date, List.of());
-        if (events.isEmpty()) {
+        List<CalendarEvent> onDate = getEventsForDate(date);
+        if (onDate.isEmpty()) {
             println("No events for " + date);
         } else {
             println("Events on " + date + ":");
-            events.forEach(e -> System.out.printf("• %s (%s–%s) @ %s\n",
+            onDate.forEach(e -> System.out.printf("• %s (%s–%s) @ %s\n",
                     e.getTitle(),
                     e.getStart().toLocalTime(),
                     e.getEnd().toLocalTime(),
@@ -86,29 +1201,23 @@ public class CalendarSystem {
      */
     public void viewEventsBetween(LocalDate start, LocalDate end) {
         System.out.printf("\nEvents from %s to %s:\n", start, end);
-        boolean found = false;
-
-        List<LocalDate> sortedDates = new ArrayList<>(eventMap.keySet());
-        Collections.sort(sortedDates);
-
-        for (LocalDate date : sortedDates) {
-            if (!date.isBefore(start) && !date.isAfter(end)) {
-                List<CalendarEvent> events = eventMap.get(date);
-                if (events != null && !events.isEmpty()) {
-                    found = true;
-                    println("\n🗓 " + date);
-                    events.stream()
-                            .sorted(Comparator.comparing(CalendarEvent::getStart))
-                            .forEach(e -> System.out.printf("• %s (%s–%s) @ %s\n",
-                                    e.getTitle(),
-                                    e.getStart().toLocalTime(),
-                                    e.getEnd().toLocalTime(),
-                                    e.getLocation()));
-                }
+
+        List<CalendarEvent> events = findEventsBetween(start.atStartOfDay(), end.plusDays(1).atStartOfDay());
+        LocalDate currentDate = null;
+        for (CalendarEvent e : events) {
+            LocalDate date = e.getStart().toLocalDate();
+            if (!date.equals(currentDate)) {
+                currentDate = date;
+                println("\n🗓 " + date);
             }
+            System.out.printf("• %s (%s–%s) @ %s\n",
+                    e.getTitle(),
+                    e.getStart().toLocalTime(),
+                    e.getEnd().toLocalTime(),
+                    e.getLocation());
         }
 
-        if (!found) {
+        if (events.isEmpty()) {
             println("No events found in that range.");
         }
     }//End viewEventsBetween
@@ -175,59 +1284,19 @@ public class CalendarSystem {
     //First is .Ics There is a library for this but it has many dependencies and we just want to do this
     // .ics is used by various calendar apps.
     public void exportEventsToIcs(String fileName) {
-        StringBuilder builder = new StringBuilder();
-        builder.append("BEGIN:VCALENDAR\n")
-                .append("VERSION:2.0\n")
-                .append("PRODID:-//CalendarSystem//EN\n")
-                .append("CALSCALE:GREGORIAN\n");
-
-        eventMap.values().stream()
-                .flatMap(List::stream)
-                .sorted(Comparator.comparing(CalendarEvent::getStart))
-                .forEach(event -> builder.append(createIcsBlock(event)));
-
-        builder.append("END:VCALENDAR");
-
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
-            writer.write(builder.toString());
+        try {
+            export(fileName, EventExporter::ics);
             println("Exported events to " + fileName);
         } catch (IOException e) {
             println("Failed to write to file: " + e.getMessage());
         }
     }//End
-    //help function
-    private String createIcsBlock(CalendarEvent event) {
-        DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
-        ZoneId systemZone = ZoneId.systemDefault();
-        String start = event.getStart().atZone(systemZone).withZoneSameInstant(ZoneOffset.UTC).format(fmt);
-        String end = event.getEnd().atZone(systemZone).withZoneSameInstant(ZoneOffset.UTC).format(fmt);
-        String uid = event.getId();
-        //
-
-        return new StringBuilder()
-                .append("BEGIN:VEVENT\n")
-                .append("UID:").append(uid).append("\n")
-                .append("DTSTAMP:").append(LocalDateTime.now().atZone(systemZone).withZoneSameInstant(ZoneOffset.UTC).format(fmt)).append("\n")
-                .append("DTSTART:").append(start).append("\n")
-                .append("DTEND:").append(end).append("\n")
-                .append("SUMMARY:").append(event.getTitle()).append("\n")
-                .append("DESCRIPTION:").append(event.getDescription()).append("\n")
-                .append("LOCATION:").append(event.getLocation()).append("\n")
-                .append("STATUS:CONFIRMED\n")
-                .append("END:VEVENT\n")
-                .toString();
-    }//End helper Function for Export to ICS
 //============================End of Format to ICS====================================
 //Csv is EZ and is cool like scv from sc bw. The svc is the builder,miner,workman that gets resources and builds barracks and farms for your army. In the custom game "DONT FUCKING MOVE" the psycho renamed the unit "This guy fucked your mom" no joke.
 //Trust me there is more to the story. It is a joke of a game. 4-5players are forced to remain still in a box while 1 player has a massive army and nukes. If you laeve the box it triggers suicide bombers named "Jihads". When the game starts the creator screams "DONT FUCKING MOVE".mp3
     public void exportToCsv(String filePath) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filePath))) {
-            writer.println("Title,Description,Location,Start,End");
-            for (CalendarEvent event : getAllEvents()) {
-                writer.printf("\"%s\",\"%s\",\"%s\",\"%s\",\"%s\"%n",
-                        event.getTitle(), event.getDescription(), event.getLocation(),
-                        event.getStart(), event.getEnd());
-            }
+        try {
+            export(filePath, EventExporter::csv);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -235,16 +1304,8 @@ public class CalendarSystem {
 
     //JSON
     public void exportToJson(String filePath) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filePath))) {
-            writer.println("[");
-            List<CalendarEvent> events = getAllEvents();
-            for (int i = 0; i < events.size(); i++) {
-                CalendarEvent e = events.get(i);
-                writer.printf("  {\n    \"title\": \"%s\",\n    \"description\": \"%s\",\n    \"location\": \"%s\",\n    \"start\": \"%s\",\n    \"end\": \"%s\"\n  }%s\n",
-                        e.getTitle(), e.getDescription(), e.getLocation(), e.getStart(), e.getEnd(),
-                        (i < events.size() - 1) ? "," : "");
-            }
-            writer.println("]");
+        try {
+            export(filePath, EventExporter::json);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -252,256 +1313,136 @@ public class CalendarSystem {
 
     //Because PDF files are opened in browsers and requires a dependency I decided to do it in HTML.
     public void exportToHtml(String filePath) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filePath))) {
-            writer.println("<!DOCTYPE html>");
-            writer.println("<html><head>");
-            writer.println("<meta charset='UTF-8'>");
-            writer.println("<title>Calendar Events</title>");
-            writer.println("<style>");
-            writer.println("body { font-family: Arial, sans-serif; background: #f6f6f6; padding: 20px; }");
-            writer.println("h1 { color: #333; }");
-            writer.println("table { width: 100%; border-collapse: collapse; background: white; }");
-            writer.println("th, td { border: 1px solid #ccc; padding: 8px; text-align: left; }");
-            writer.println("th { background-color: #e0e0e0; }");
-            writer.println("tr:nth-child(even) { background-color: #f9f9f9; }");
-            writer.println("</style></head><body>");
-            writer.println("<h1>Calendar Events</h1>");
-            writer.println("<table id='allEventsTable'>");
-            writer.println("<tr><th>Title</th><th>Description</th><th>Location</th><th>Start</th><th>End</th></tr>");
-
-            DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
-
-            for (CalendarEvent event : getAllEvents()) {
-                writer.println("  <tr>");
-                writer.printf("    <td>%s</td>%n", escapeHtml(event.getTitle()));
-                writer.printf("    <td>%s</td>%n", escapeHtml(event.getDescription()));
-                writer.printf("    <td>%s</td>%n", escapeHtml(event.getLocation()));
-                writer.printf("    <td>%s</td>%n", event.getStart().format(fmt));
-                writer.printf("    <td>%s</td>%n", event.getEnd().format(fmt));
-                writer.println("  </tr>");
-            }
-
-            writer.println("</table></body></html>");
+        try {
+            export(filePath, EventExporter::html);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }//End ()
-    private String escapeHtml(String input) {
-        if (input == null) return "";
-
-        StringBuilder out = new StringBuilder();
-        for (char c : input.toCharArray()) {
-            switch (c) {
-                case '<': out.append("&lt;"); break;
-                case '>': out.append("&gt;"); break;
-                case '&': out.append("&amp;"); break;
-                case '"': out.append("&quot;"); break;
-                case '\'': out.append("&#x27;"); break;
-                case '/': out.append("&#x2F;"); break; // optional, prevents </script> injection
-                default:
-                    if (c > 127) out.append("&#").append((int) c).append(";");else out.append(c);
-                    //End If
-            }//End Switch
-        }//End Loop
-        return out.toString();
-    }//End ()
+
+    interface ExporterFactory { EventExporter create(ChannelTextWriter out) throws IOException; }
+
+    // Streams the tree snapshot (in start order) through one exporter; nothing is materialized
+    private void export(String filePath, ExporterFactory format) throws IOException {
+        try (EventExporter exporter = format.create(ChannelTextWriter.open(Path.of(filePath)))) {
+            exporter.writeAll(stored());
+        }
+    }//End export()
+
+    /**
+     * Export for the GUI's background task: progress gets the number of events written every
+     * PROGRESS_EVERY events and may throw (cancel) to stop. A file that isn't finished is deleted.
+     * Returns the number of events written.
+     */
+    public long export(Path path, CalendarFormat format, LongConsumer progress) throws IOException {
+        long written = 0;
+        try (EventExporter exporter = format.exporter(ChannelTextWriter.open(path))) {
+            for (CalendarEvent e : stored()) {
+                exporter.write(e);
+                if (++written % PROGRESS_EVERY == 0) progress.accept(written);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        progress.accept(written);
+        return written;
+    }//End export()
 
 //===================================END OF EXPORT FUNCTIONS====================================
 //==============================================================================================
 
 //=================================IMPORT FUNCTIONS==============================================
 
-    //CSV
+    //CSV, parsed in parallel chunks with a real RFC 4180 state machine (see CsvEventReader)
     public void importFromCsv(String filePath) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line = reader.readLine(); // skip header
-            DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
-
-            while ((line = reader.readLine()) != null) {
-                String[] tokens = line.split("\",\"");
-                if (tokens.length != 5) continue;
-
-                String title = tokens[0].replaceFirst("^\"", "");
-                String description = tokens[1];
-                String location = tokens[2];
-                String start = tokens[3];
-                String end = tokens[4].replaceAll("\"$", "");
-
-                CalendarEvent event = new CalendarEvent(
-                        title.trim(), description.trim(), location.trim(),
-                        LocalDateTime.parse(start.trim()), LocalDateTime.parse(end.trim())
-                );
-                addEvent(event);
-            }
-        } catch (IOException | DateTimeParseException e) {
-            e.printStackTrace();
-        }
+        importFile(filePath, CalendarFormat.CSV);
     }//End ()
 
-    //JSON
+    //JSON, tokenized as a stream one object at a time (see JsonEventReader)
     public void importFromJson(String filePath) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            StringBuilder json = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) json.append(line.trim());
-
-            String content = json.toString();
-            DateTimeFormatter fmt = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
-
-            String[] entries = content.split("\\},\\s*\\{");
-            for (String block : entries) {
-                String cleaned = block.replaceAll("[\\[\\]\\{\\}]", "");
-                String[] fields = cleaned.split("\",\\s*\"");
-                String title = "", description = "", location = "", start = "", end = "";
-
-                for (String field : fields) {
-                    String[] pair = field.replace("\"", "").split(":", 2);
-                    if (pair.length < 2) continue;
-                    switch (pair[0].trim()) {
-                        case "title" -> title = pair[1].trim();
-                        case "description" -> description = pair[1].trim();
-                        case "location" -> location = pair[1].trim();
-                        case "start" -> start = pair[1].trim();
-                        case "end" -> end = pair[1].trim();
-                    }
-                }
-
-                CalendarEvent event = new CalendarEvent(
-                        title, description, location,
-                        LocalDateTime.parse(start, fmt),
-                        LocalDateTime.parse(end, fmt)
-                );
-                addEvent(event);
-            }
-        } catch (IOException | DateTimeParseException e) {
-            e.printStackTrace();
-        }
+        importFile(filePath, CalendarFormat.JSON);
     }//End ()
 
-    //ICS
+    //ICS, streamed one VEVENT at a time (folded lines, TZID and all-day dates handled by IcsReader)
     public void importFromIcs(String filePath) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            CalendarEvent event = null;
-
-            String title = "", description = "", location = "", dtStart = "", dtEnd = "";
-
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.equals("BEGIN:VEVENT")) {
-                    title = description = location = dtStart = dtEnd = "";
-                } else if (line.startsWith("SUMMARY:")) {
-                    title = line.substring(8);
-                } else if (line.startsWith("DESCRIPTION:")) {
-                    description = line.substring(12);
-                } else if (line.startsWith("LOCATION:")) {
-                    location = line.substring(9);
-                } else if (line.startsWith("DTSTART:")) {
-                    dtStart = line.substring(8);
-                } else if (line.startsWith("DTEND:")) {
-                    dtEnd = line.substring(6);
-                } else if (line.equals("END:VEVENT")) {
-                    //DateTimeFormatter icsFmt = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'X'");
-                    DateTimeFormatter icsFmt = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmssX");
-                    LocalDateTime start = OffsetDateTime.parse(dtStart, icsFmt).toLocalDateTime();
-                    LocalDateTime end = OffsetDateTime.parse(dtEnd, icsFmt).toLocalDateTime();
-                    System.out.println("Parsed event: " + title + " from " + dtStart + " to " + dtEnd);
-
-                    CalendarEvent e = new CalendarEvent(title, description, location, start, end);
-                    addEvent(e);
-                }
-            }
-        } catch (IOException | DateTimeParseException e) {
-            e.printStackTrace();
-        }
+        importFile(filePath, CalendarFormat.ICS);
     }//End ()
 
-    //HTML with validation
+    //HTML tables, tokenized as a stream so any layout of rows and cells reads (see HtmlEventReader)
     public void importFromHtml(String filePath) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            boolean inTable = false;
-            boolean headerValidated = false;
-            DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
-
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-
-                // Start of table with any id
-                if (!inTable && line.matches(".*<table[^>]*id\\s*=\\s*['\"].+['\"].*")) {
-                    inTable = true;
-                    continue;
-                }
-
-                // Wait for header to validate table structure
-                // Loosened: assume the next <tr> is header, skip it regardless of content
-                if (inTable && !headerValidated && line.toLowerCase().contains("<tr>") && line.toLowerCase().contains("<th>")) {
-                    System.out.println("HTML HEADER BLOCK: " + line); // optional for debug
-                    if (!isValidHtmlTableHeader(line)) continue;
-                    headerValidated = true;
-                    continue;
-                }
-
-
+        importFile(filePath, CalendarFormat.HTML);
+    }//End ()
 
+    // Any supported file, plain, .gz or .zip; the format is sniffed from the content (see FormatDetector)
+    public void importFile(String filePath) {
+        importFile(filePath, null);
+    }//End ()
 
-                /*  if (inTable && !headerValidated && line.toLowerCase().contains("<tr>")) {
-                    StringBuilder headerBlock = new StringBuilder();
-                    for (int i = 0; i < 5; i++) {
-                        String h = reader.readLine();
-                        if (h != null) headerBlock.append(h);
-                    }
-                }//End If
-                */
-                //if (!isValidHtmlTableHeader(headerBlock.toString())) continue;//Helper function called. If this Helper function starts acting up, giving problems switch back to old code Delete the helper function & replace this line // if (headers == null || !headers.toLowerCase().contains("title")) continue;
-                // if (headers == null || !headers.toLowerCase().contains("title")) continue;
-                // headerValidated = true;
-                //   continue;
-
-
-                // Store event rows into cells
-                if (inTable && line.contains("<tr>")) {
-                    String[] cells = new String[5];
-                    for (int i = 0; i < 5; i++) {
-                        line = reader.readLine();
-                        if (line == null) break; //skip if line is null
-                        cells[i] = line.replaceAll("<.*?>", "").trim();
-
-                    }//End Loop
-                    System.out.println("IMPORTING HTML EVENT: " + Arrays.toString(cells));
-                    //anyMatch(...) checks if any of the cells in the row are null or empty strings "".
-                    if (Arrays.stream(cells).anyMatch(s -> s == null || s.isEmpty())){
-                        System.out.println("NULL OR BLANK EVENT " + Arrays.toString(cells));
-                        continue; //If so Skip to Next Row
-                    }
+    // One file, parsed to the side and added as one batch. Readers in CalendarFormat; null format = detect.
+    private void importFile(String filePath, CalendarFormat format) {
+        List<CalendarEvent> batch = new ArrayList<>();
+        try {
+            Path path = Path.of(filePath);
+            int skipped = format == null ? FormatDetector.read(path, batch::add) : format.read(path, batch::add);
+            if (skipped > 0) println("Skipped " + skipped + " unreadable entries in " + filePath);
+        } catch (IOException | UncheckedIOException e) {
+            println("Could not import " + filePath + ": " + e.getMessage()); // nothing from a file that failed goes in
+            return;
+        }
+        int[] upsert = addEvents(batch);
+        println("Imported " + filePath + ": " + upsert[0] + " new, " + upsert[1] + " updated, " + upsert[2] + " unchanged"
+                + (upsert[3] > 0 ? ", " + upsert[3] + " removed" : ""));
+    }//End importFile()
 
+    /**
+     * One file or stream (sniffed, see FormatDetector) added batchSize events at a time, so a long import
+     * shows up while it runs instead of all at the end. afterBatch gets the running {added, updated, unchanged, removed}
+     * after each batch and may throw (cancel) to stop; batches already added stay. Returns the totals.
+     */
+    public int[] importStream(InputStream in, String name, int batchSize, Consumer<int[]> afterBatch)
+            throws IOException {
+        int[] totals = new int[4];
+        List<CalendarEvent> batch = new ArrayList<>(batchSize);
+        Consumer<CalendarEvent> sink = e -> {
+            batch.add(e);
+            if (batch.size() >= batchSize) addBatch(batch, totals, afterBatch);
+        };
+        try {
+            FormatDetector.read(in, name, sink);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        addBatch(batch, totals, afterBatch);
+        return totals;
+    }//End importStream()
+
+    private void addBatch(List<CalendarEvent> batch, int[] totals, Consumer<int[]> afterBatch) {
+        int[] upsert = addEvents(batch);
+        batch.clear();
+        for (int i = 0; i < totals.length; i++) totals[i] += upsert[i];
+        afterBatch.accept(totals.clone());
+    }
 
-                    try {
-                        CalendarEvent event = new CalendarEvent(
-                                cells[0], cells[1], cells[2],
-                                LocalDateTime.parse(cells[3], fmt),
-                                LocalDateTime.parse(cells[4], fmt)
-                        );
-                        addEvent(event);
-                    } catch (Exception ex) {
-                        System.err.println("Skipping invalid row: " + Arrays.toString(cells));
-                    }//End Try
-                }//End If
-            }//End White
-        } catch (IOException e) {
-            e.printStackTrace();
-        }//End Try
-    }//End HTML import ()
-    private boolean isValidHtmlTableHeader(String headerLine) {
-        if (headerLine == null) return false;
-        // Normalize casing and remove HTML tags
-        String normalized = headerLine.replaceAll("(?i)<[^>]+>", "").toLowerCase();
-        return normalized.contains("title")
-                && normalized.contains("description")
-                && normalized.contains("location")
-                && normalized.contains("start")
-                && normalized.contains("end");
-    }//End isValid()
+    /**
+     * Many files at once (paths and/or directories, see BulkImport): every file is parsed in parallel
+     * into its own list, then everything goes in as one batch. Returns what happened per file.
+     */
+    public List<BulkImport.FileResult> importAll(Collection<Path> paths) throws IOException {
+        return importAll(paths, r -> { });
+    }//End importAll()
+
+    // Same, with onFile told as each file finishes (from the parsing threads); it may throw to stop before anything is added
+    public List<BulkImport.FileResult> importAll(Collection<Path> paths, Consumer<BulkImport.FileResult> onFile)
+            throws IOException {
+        List<BulkImport.FileResult> results = BulkImport.parseAll(paths, onFile);
+        int total = 0;
+        for (BulkImport.FileResult r : results) total += r.events.size();
+        List<CalendarEvent> batch = new ArrayList<>(total);
+        for (BulkImport.FileResult r : results) batch.addAll(r.events);
+        addEvents(batch);
+        return results;
+    }//End importAll()
 
 
 
@@ -0,0 +1,185 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * UTF-8 text writer straight onto a channel through one reusable byte buffer. Chars are encoded by hand
+ * into the buffer (a run of ASCII is one copy loop) and the buffer goes to the channel whenever it fills,
+ * so an export holds at most BUFFER_SIZE bytes no matter how many events it writes. Also formats numbers and
+ * epoch minutes in place, which is what the exporters spend most of their time on.
+ * Not thread safe; one writer per export.
+ */
+public class ChannelTextWriter implements Closeable {
+    static final int BUFFER_SIZE = 1 << 18;
+
+    private final WritableByteChannel channel;
+    private final byte[] bytes = new byte[BUFFER_SIZE];
+    private final ByteBuffer view = ByteBuffer.wrap(bytes);
+    private int count;
+    private char pendingHigh; // first half of a surrogate pair split across append(char) calls
+
+    public ChannelTextWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    public static ChannelTextWriter open(Path path) throws IOException {
+        return new ChannelTextWriter(FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+    }
+
+    public ChannelTextWriter append(CharSequence s) throws IOException {
+        return s == null ? this : append(s, 0, s.length());
+    }
+
+    // ASCII runs are copied into the buffer in one pass, as much of the run as fits, so the room is checked
+    // once per run rather than per char; anything else goes through append(char)
+    public ChannelTextWriter append(CharSequence s, int from, int to) throws IOException {
+        int i = from;
+        while (i < to) {
+            if (pendingHigh == 0) {
+                if (count == bytes.length) flushBuffer();
+                byte[] b = bytes;
+                int n = count, end = Math.min(to, i + b.length - n);
+                for (char c; i < end && (c = s.charAt(i)) < 0x80; i++) b[n++] = (byte) c;
+                count = n;
+                if (i == end) continue; // the run is done, or the buffer is full
+            }
+            append(s.charAt(i++));
+        }
+        return this;
+    }
+
+    public ChannelTextWriter append(char c) throws IOException {
+        if (pendingHigh != 0) {
+            char high = pendingHigh;
+            pendingHigh = 0;
+            if (Character.isLowSurrogate(c)) {
+                encode(Character.toCodePoint(high, c));
+                return this;
+            }
+            encode('?'); // unpaired high surrogate
+        }
+        if (Character.isHighSurrogate(c)) pendingHigh = c;
+        else encode(Character.isLowSurrogate(c) ? '?' : c);
+        return this;
+    }
+
+    public ChannelTextWriter append(long value) throws IOException {
+        if (value < 0) {
+            append('-');
+            if (value == Long.MIN_VALUE) return append("9223372036854775808");
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value / 10; v != 0; v /= 10) digits++;
+        return appendPadded(value, digits);
+    }
+
+//===================================DATES====================================
+    // yyyy-MM-dd'T'HH:mm, the same text LocalDateTime.toString() gives for a whole minute
+    public ChannelTextWriter appendIsoMinute(long epochMinute) throws IOException {
+        return appendMinute(epochMinute, true, 'T');
+    }
+
+    // yyyy-MM-dd HH:mm
+    public ChannelTextWriter appendDisplayMinute(long epochMinute) throws IOException {
+        return appendMinute(epochMinute, true, ' ');
+    }
+
+    // yyyyMMdd'T'HHmm00'Z', for a minute that is already in UTC
+    public ChannelTextWriter appendIcsUtc(long epochMinute) throws IOException {
+        appendDate(Math.floorDiv(epochMinute, 24 * 60), false);
+        append('T');
+        long minuteOfDay = Math.floorMod(epochMinute, 24 * 60);
+        appendPadded(minuteOfDay / 60, 2);
+        appendPadded(minuteOfDay % 60, 2);
+        return append("00Z");
+    }
+
+    private ChannelTextWriter appendMinute(long epochMinute, boolean dashes, char separator) throws IOException {
+        appendDate(Math.floorDiv(epochMinute, 24 * 60), dashes);
+        append(separator);
+        long minuteOfDay = Math.floorMod(epochMinute, 24 * 60);
+        appendPadded(minuteOfDay / 60, 2);
+        append(':');
+        return appendPadded(minuteOfDay % 60, 2);
+    }
+
+    // Civil date from epoch day (H. Hinnant's days_from_civil inverse), no LocalDate needed
+    private void appendDate(long epochDay, boolean dashes) throws IOException {
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        if (year >= 0 && year <= 9999) appendPadded(year, 4);
+        else append(year);
+        if (dashes) append('-');
+        appendPadded(month, 2);
+        if (dashes) append('-');
+        appendPadded(day, 2);
+    }
+
+    // value (>= 0) as exactly width digits, zero padded
+    private ChannelTextWriter appendPadded(long value, int width) throws IOException {
+        if (count + width > bytes.length) flushBuffer();
+        for (int i = count + width - 1; i >= count; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        count += width;
+        return this;
+    }
+
+//===================================PLUMBING====================================
+    private void encode(int cp) throws IOException {
+        if (count + 4 > bytes.length) flushBuffer();
+        if (cp < 0x80) {
+            bytes[count++] = (byte) cp;
+        } else if (cp < 0x800) {
+            bytes[count++] = (byte) (0xC0 | cp >> 6);
+            bytes[count++] = (byte) (0x80 | cp & 0x3F);
+        } else if (cp < 0x10000) {
+            bytes[count++] = (byte) (0xE0 | cp >> 12);
+            bytes[count++] = (byte) (0x80 | cp >> 6 & 0x3F);
+            bytes[count++] = (byte) (0x80 | cp & 0x3F);
+        } else {
+            bytes[count++] = (byte) (0xF0 | cp >> 18);
+            bytes[count++] = (byte) (0x80 | cp >> 12 & 0x3F);
+            bytes[count++] = (byte) (0x80 | cp >> 6 & 0x3F);
+            bytes[count++] = (byte) (0x80 | cp & 0x3F);
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        view.clear().limit(count);
+        while (view.hasRemaining()) channel.write(view);
+        count = 0;
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (pendingHigh != 0) {
+                pendingHigh = 0;
+                encode('?');
+            }
+            flushBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+}//End Class
@@ -0,0 +1,246 @@
+import java.lang.ref.Reference;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Read-only, column-oriented store for historic years (see CalendarSystem.archiveBefore).
+ * Start and end live in two long[] of epoch minutes sorted by start, text lives in parallel
+ * String[] columns with repeated values (locations, "OFF", recurring titles) shared, and ids are found
+ * through a long[] of (id hash, row) pairs. There is no per-event object at all; get(i) builds a
+ * CalendarEvent view only when someone asks for it. Immutable: withAll/without return a new store.
+ *
+ * main() measures the heap the same events take live in a CalendarSystem and archived here.
+ */
+public final class CompactEventStore implements Iterable<CalendarEvent> {
+    public static final CompactEventStore EMPTY = new Columns(0).build();
+
+    private final long[] starts;
+    private final long[] ends;
+    private final String[] ids;
+    private final String[] titles;
+    private final String[] descriptions;
+    private final String[] locations;
+    private final long[] idHashRows;  // id hashCode << 32 | row, sorted
+    private final long maxDuration;   // longest event, bounds how far back an overlap search has to look
+
+    private CompactEventStore(long[] starts, long[] ends, String[] ids, String[] titles, String[] descriptions,
+                              String[] locations, long[] idHashRows, long maxDuration) {
+        this.starts = starts;
+        this.ends = ends;
+        this.ids = ids;
+        this.titles = titles;
+        this.descriptions = descriptions;
+        this.locations = locations;
+        this.idHashRows = idHashRows;
+        this.maxDuration = maxDuration;
+    }
+
+    // Builds the columns from any set of events, in any order
+    public static CompactEventStore of(Collection<CalendarEvent> events) {
+        return EMPTY.withAll(events);
+    }
+
+    // This store plus more events: both runs are merged by start, O(N + k log k)
+    public CompactEventStore withAll(Collection<CalendarEvent> more) {
+        CalendarEvent[] sorted = more.toArray(new CalendarEvent[0]);
+        Arrays.sort(sorted, (a, b) -> Long.compare(a.getStartMinute(), b.getStartMinute()));
+        Columns out = new Columns(size() + sorted.length);
+        int i = 0, j = 0;
+        while (i < size() || j < sorted.length) {
+            if (j == sorted.length || (i < size() && starts[i] <= sorted[j].getStartMinute())) {
+                out.add(ids[i], titles[i], descriptions[i], locations[i], starts[i], ends[i]);
+                i++;
+            } else {
+                CalendarEvent e = sorted[j++];
+                out.add(e.getId(), e.getTitle(), e.getDescription(), e.getLocation(), e.getStartMinute(), e.getEndMinute());
+            }
+        }
+        return out.build();
+    }
+
+    // This store without the rows of these ids, O(N)
+    public CompactEventStore without(Collection<String> dropped) {
+        boolean[] drop = new boolean[size()];
+        int n = size();
+        for (String id : dropped) {
+            int row = indexOf(id);
+            if (row >= 0 && !drop[row]) {
+                drop[row] = true;
+                n--;
+            }
+        }
+        if (n == size()) return this;
+        Columns out = new Columns(n);
+        for (int i = 0; i < size(); i++) {
+            if (!drop[i]) out.add(ids[i], titles[i], descriptions[i], locations[i], starts[i], ends[i]);
+        }
+        return out.build();
+    }
+
+    public int size() { return starts.length; }
+    public long startMinuteAt(int i) { return starts[i]; }
+    public long endMinuteAt(int i) { return ends[i]; }
+
+    // Materializes a view of row i
+    public CalendarEvent get(int i) {
+        return new CalendarEvent(ids[i], titles[i], descriptions[i], locations[i], starts[i], ends[i]);
+    }
+
+    // Row of the event with this id, or -1. O(log N)
+    public int indexOf(String id) {
+        long hash = (long) id.hashCode() << 32;
+        int lo = 0, hi = idHashRows.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (idHashRows[mid] < hash) lo = mid + 1;
+            else hi = mid;
+        }
+        for (int i = lo; i < idHashRows.length && (idHashRows[i] & 0xFFFFFFFF00000000L) == hash; i++) {
+            int row = (int) idHashRows[i];
+            if (ids[row].equals(id)) return row;
+        }
+        return -1;
+    }
+
+    // First row whose start is >= minute (size() when there is none)
+    public int lowerBound(long minute) {
+        int lo = 0, hi = starts.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (starts[mid] < minute) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // Events whose start lies in [from, to), sorted by start
+    public List<CalendarEvent> startingBetween(long fromMinute, long toMinute) {
+        List<CalendarEvent> result = new ArrayList<>();
+        int end = lowerBound(toMinute);
+        for (int i = lowerBound(fromMinute); i < end; i++) result.add(get(i));
+        return result;
+    }
+
+    // Events overlapping [from, to), sorted by start, same rule as EventIntervalTree.overlapping.
+    // Only rows that started within maxDuration of 'from' are checked.
+    public List<CalendarEvent> overlapping(long fromMinute, long toMinute) {
+        List<CalendarEvent> result = new ArrayList<>();
+        if (fromMinute >= toMinute) return result;
+        int end = lowerBound(toMinute);
+        for (int i = lowerBound(fromMinute - maxDuration); i < end; i++) {
+            if (overlaps(i, fromMinute)) result.add(get(i));
+        }
+        return result;
+    }
+
+    public boolean anyOverlapping(long fromMinute, long toMinute) {
+        if (fromMinute >= toMinute) return false;
+        int end = lowerBound(toMinute);
+        for (int i = lowerBound(fromMinute - maxDuration); i < end; i++) {
+            if (overlaps(i, fromMinute)) return true;
+        }
+        return false;
+    }
+
+    private boolean overlaps(int i, long fromMinute) {
+        return ends[i] > fromMinute || starts[i] >= fromMinute;
+    }
+
+    // Views in start order, made one at a time as the iteration gets to them
+    @Override
+    public Iterator<CalendarEvent> iterator() {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() { return next < starts.length; }
+
+            @Override
+            public CalendarEvent next() {
+                if (next >= starts.length) throw new NoSuchElementException();
+                return get(next++);
+            }
+        };
+    }
+
+    // Columns filled row by row in start order; text values are shared within one store
+    private static final class Columns {
+        final long[] starts, ends;
+        final String[] ids, titles, descriptions, locations;
+        final Map<String, String> shared = new HashMap<>();
+        int n;
+        long longest;
+
+        Columns(int capacity) {
+            starts = new long[capacity];
+            ends = new long[capacity];
+            ids = new String[capacity];
+            titles = new String[capacity];
+            descriptions = new String[capacity];
+            locations = new String[capacity];
+        }
+
+        void add(String id, String title, String description, String location, long start, long end) {
+            starts[n] = start;
+            ends[n] = end;
+            ids[n] = id;
+            titles[n] = share(title);
+            descriptions[n] = share(description);
+            locations[n] = share(location);
+            longest = Math.max(longest, end - start);
+            n++;
+        }
+
+        private String share(String value) {
+            if (value == null) return null;
+            String existing = shared.putIfAbsent(value, value);
+            return existing != null ? existing : value;
+        }
+
+        CompactEventStore build() {
+            long[] idHashRows = new long[n];
+            for (int i = 0; i < n; i++) idHashRows[i] = (long) ids[i].hashCode() << 32 | i;
+            Arrays.sort(idHashRows);
+            return new CompactEventStore(starts, ends, ids, titles, descriptions, locations, idHashRows, longest);
+        }
+    }
+
+//=================================HEAP FOOTPRINT COMPARISON======================================
+    // java CompactEventStore [events]  -- used heap after GC for the same events live in a CalendarSystem
+    // (tree, id/title/location/keyword indexes) and after archiveBefore moved them all into this store
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        long empty = usedHeap();
+        CalendarSystem system = new CalendarSystem();
+        system.addEvents(sampleEvents(n));
+        long live = usedHeap() - empty;
+
+        system.archiveBefore(LocalDateTime.of(2100, 1, 1, 0, 0).toLocalDate());
+        long archived = usedHeap() - empty;
+
+        System.out.printf("%,d events (ids, text and day counts included in both)%n", system.size());
+        System.out.printf("Live: interval tree + indexes of CalendarEvent : %,d bytes (%d/event)%n", live, live / n);
+        System.out.printf("Archived: CompactEventStore columns            : %,d bytes (%d/event)%n", archived, archived / n);
+        Reference.reachabilityFence(system);
+    }
+
+    private static List<CalendarEvent> sampleEvents(int n) {
+        String[] titlePool = {"OFF", "Team Sync-Up", "1:1", "Gym", "Dentist", "Standup", "Lunch", "Review"};
+        String[] locationPool = {"Zoom", "Office", "Beach Pavilion, FL", "Innovation Lab, Floor 3"};
+        Random random = new Random(42);
+        long base = CalendarEvent.toEpochMinute(LocalDateTime.of(2015, 1, 1, 0, 0));
+        List<CalendarEvent> events = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            long start = base + random.nextInt(10 * 365 * 24 * 60);
+            events.add(new CalendarEvent(titlePool[i % titlePool.length], "", locationPool[i % locationPool.length],
+                    start, start + 30 + random.nextInt(120)));
+        }
+        return events;
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}//End Class
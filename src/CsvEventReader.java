@@ -0,0 +1,449 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.util.*;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * RFC 4180 CSV reader for the export format (Title,Description,Location,Start,End[,UID]).
+ * Quoted fields may hold commas, "" escaped quotes and line breaks. Columns are matched by header
+ * name, so reordered or extra columns are fine; a file without a header is read in export order.
+ *
+ * readParallel cuts the file into chunks of about CHUNK_SIZE and parses them on the ForkJoin common pool,
+ * each into its own list; the lists are concatenated in file order at the end. Every task finds its own
+ * record boundaries by reading forward from its nominal offsets (see seekRecord), and reads its chunk with
+ * positional FileChannel reads into one reused heap buffer. A quote-parity check over the chunks afterwards
+ * catches a boundary that landed inside a quoted field; those chunks are parsed again as one.
+ * read(InputStream, ...) runs the same state machine sequentially for streams.
+ */
+public class CsvEventReader {
+    private static final int CHUNK_SIZE = 32 << 20;          // bytes per parallel task
+    private static final int SEQUENTIAL_THRESHOLD = 4 << 20; // smaller files are not worth splitting
+    private static final int READ_BUFFER = 1 << 20;          // heap buffer per task, refilled through the chunk
+    private static final int SEEK_WINDOW = 1 << 20;          // how far a boundary search looks for a quote to tell
+
+    // Events parsed from one file plus the rows that had to be dropped
+    public static final class Result {
+        public final List<CalendarEvent> events;
+        public final int skipped;
+
+        Result(List<CalendarEvent> events, int skipped) {
+            this.events = events;
+            this.skipped = skipped;
+        }
+    }
+
+    // Sequential parse of a stream, events go to sink. Returns the number of skipped rows.
+    public static int read(InputStream in, Consumer<CalendarEvent> sink) throws IOException {
+        Parser parser = new Parser(null, sink);
+        byte[] chunk = new byte[1 << 16];
+        int n;
+        while ((n = in.read(chunk)) > 0) parser.feed(ByteBuffer.wrap(chunk, 0, n));
+        parser.finish();
+        return parser.skipped;
+    }
+
+    public static Result readParallel(Path path) throws IOException {
+        return readParallel(path, CHUNK_SIZE, SEQUENTIAL_THRESHOLD);
+    }
+
+    // Same with other chunk sizes (tests cut small files into many chunks this way)
+    static Result readParallel(Path path, long chunkSize, long sequentialThreshold) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) return new Result(new ArrayList<>(), 0);
+
+            // Header first, so every chunk knows the column layout
+            ByteBuffer head = ByteBuffer.allocate((int) Math.min(size, 1 << 20));
+            while (head.hasRemaining() && channel.read(head, head.position()) > 0) { }
+            head.flip();
+            long headerEnd = recordEnd(head);
+            List<String> header = new ArrayList<>();
+            Parser headerParser = new Parser(Columns.DEFAULT, null);
+            headerParser.recordSink = header::addAll;
+            headerParser.feed(head.limit((int) headerEnd));
+            headerParser.finish();
+            Columns columns = Columns.fromHeader(header);
+            if (columns == null) { // no header, first line is data
+                columns = Columns.DEFAULT;
+                headerEnd = 0;
+            }
+
+            // Nominal cuts every chunkSize bytes; each task moves its own two to record starts
+            long body = size - headerEnd;
+            int n = body <= sequentialThreshold ? 1 : (int) ((body + chunkSize - 1) / chunkSize);
+            List<long[]> ranges = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) ranges.add(new long[]{headerEnd + i * chunkSize, Math.min(size, headerEnd + (i + 1) * chunkSize)});
+            Chunk[] parts = new ChunkTask(channel, columns, ranges, true, headerEnd, size, 0, n).invoke();
+            List<Chunk> chunks = resync(channel, columns, parts, size);
+
+            int total = 0, skipped = 0;
+            for (Chunk c : chunks) {
+                total += c.events.size();
+                skipped += c.skipped;
+            }
+            List<CalendarEvent> events = new ArrayList<>(total);
+            for (Chunk c : chunks) events.addAll(c.events);
+            return new Result(events, skipped);
+        }
+    }
+
+//===================================CHUNKING====================================
+    // One parsed range, whether its start was found to be a record start, and the number of '"' bytes in it
+    private static final class Chunk {
+        final long start, end;
+        final boolean recordStart;
+        final List<CalendarEvent> events;
+        final int skipped;
+        final long quotes;
+
+        Chunk(long start, long end, boolean recordStart, List<CalendarEvent> events, int skipped, long quotes) {
+            this.start = start;
+            this.end = end;
+            this.recordStart = recordStart;
+            this.events = events;
+            this.skipped = skipped;
+            this.quotes = quotes;
+        }
+    }
+
+    /**
+     * A boundary is a record start only if the quotes before it pair up. Where they don't, seekRecord
+     * guessed wrong and the boundary cut a quoted field; where it found no record start at all before the next
+     * cut, the boundary is just that cut. Either way the chunks on both sides of it are parsed again as one
+     * range, starting at the last boundary that checked out. Usually nothing needs redoing.
+     */
+    private static List<Chunk> resync(FileChannel channel, Columns columns, Chunk[] parts, long size) {
+        List<Chunk> out = new ArrayList<>(parts.length);
+        List<long[]> redo = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        long quotes = 0;
+        int first = 0;
+        for (int i = 1; i <= parts.length; i++) {
+            quotes += parts[i - 1].quotes;
+            if (i < parts.length && ((quotes & 1) != 0 || !parts[i].recordStart)) continue; // boundary i cuts a record
+            if (i - first == 1) {
+                out.add(parts[first]);
+            } else {
+                redo.add(new long[]{parts[first].start, parts[i - 1].end});
+                slots.add(out.size());
+                out.add(null);
+            }
+            first = i;
+        }
+        if (!redo.isEmpty()) {
+            Chunk[] again = new ChunkTask(channel, columns, redo, false, 0, size, 0, redo.size()).invoke();
+            for (int i = 0; i < again.length; i++) out.set(slots.get(i), again[i]);
+        }
+        return out;
+    }
+
+    private static final int DEAD = -1, RECORD_END = 4; // besides Parser's field states
+
+    /**
+     * Start of the first record at or after pos (-1 if none starts before limit), found by reading forward
+     * from pos only. Whether pos is inside a quoted field can't be told from there, so both readings are
+     * followed at once, and one is dropped as soon as it needs a quote where RFC 4180 has none (inside an
+     * unquoted field, or a closing quote followed by text). The first line break outside quotes in the
+     * reading that is left is the boundary. Exported files quote every text field, so that is settled within
+     * a record or two. With no quotes at all for SEEK_WINDOW bytes, pos is taken to be outside quotes;
+     * resync() catches it if that was wrong.
+     */
+    private static long seekRecord(FileChannel channel, long pos, long limit) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(64 << 10);
+        int outside = DEAD, inside = DEAD;
+        long outsideEnd = -1, insideEnd = -1;
+        boolean started = false;
+        long at = pos - 1; // the byte before pos says whether a field starts at pos
+        while (at < limit) {
+            buf.clear().limit((int) Math.min(buf.capacity(), limit - at));
+            int n = channel.read(buf, at);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++, at++) {
+                byte b = buf.get(i);
+                if (!started) {
+                    if (b == '"') continue; // right after a quote both readings fit, start at the next byte
+                    outside = b == ',' || b == '\n' ? Parser.FIELD_START : Parser.UNQUOTED;
+                    outsideEnd = b == '\n' ? at + 1 : -1;
+                    inside = Parser.QUOTED;
+                    insideEnd = -1;
+                    started = true;
+                    continue;
+                }
+                if (outside != DEAD && (outside = step(outside, b)) == RECORD_END && outsideEnd < 0) outsideEnd = at + 1;
+                if (inside != DEAD && (inside = step(inside, b)) == RECORD_END && insideEnd < 0) insideEnd = at + 1;
+                if (inside == DEAD && outsideEnd >= 0 && outside != DEAD) return outsideEnd;
+                if (outside == DEAD && insideEnd >= 0 && inside != DEAD) return insideEnd;
+                if (outside == DEAD && inside == DEAD) started = false; // stray quotes, neither fits: start over here
+                else if (outsideEnd >= 0 && outside != DEAD && inside != DEAD && at - pos >= SEEK_WINDOW) return outsideEnd;
+            }
+        }
+        if (outside != DEAD && outsideEnd >= 0) return outsideEnd;
+        if (inside != DEAD && insideEnd >= 0) return insideEnd;
+        return -1;
+    }
+
+    // One byte through Parser's field states, strict about where quotes may be
+    private static int step(int state, byte b) {
+        return switch (state) {
+            case Parser.FIELD_START, RECORD_END ->
+                    b == '"' ? Parser.QUOTED : b == ',' || b == '\r' ? Parser.FIELD_START : b == '\n' ? RECORD_END : Parser.UNQUOTED;
+            case Parser.UNQUOTED -> b == '"' ? DEAD : b == ',' ? Parser.FIELD_START : b == '\n' ? RECORD_END : Parser.UNQUOTED;
+            case Parser.QUOTED -> b == '"' ? Parser.QUOTE_IN_QUOTED : Parser.QUOTED;
+            case Parser.QUOTE_IN_QUOTED -> b == '"' ? Parser.QUOTED : b == ',' ? Parser.FIELD_START
+                    : b == '\n' ? RECORD_END : b == '\r' ? Parser.QUOTE_IN_QUOTED : DEAD;
+            default -> throw new IllegalStateException();
+        };
+    }
+
+    // Byte offset just after the first record's line break (quotes respected), or the buffer end
+    private static int recordEnd(ByteBuffer buf) {
+        boolean quoted = false;
+        for (int i = 0; i < buf.limit(); i++) {
+            byte b = buf.get(i);
+            if (b == '"') quoted = !quoted;
+            else if (b == '\n' && !quoted) return i + 1;
+        }
+        return buf.limit();
+    }
+
+    // Parses ranges[lo, hi). With seek, a range is nominal and its inner ends are moved to record starts first
+    // (from and size are real boundaries already); the neighbour seeking the same offset finds the same one.
+    private static final class ChunkTask extends RecursiveTask<Chunk[]> {
+        private final FileChannel channel;
+        private final Columns columns;
+        private final List<long[]> ranges;
+        private final boolean seek;
+        private final long from, size;
+        private final int lo, hi;
+
+        ChunkTask(FileChannel channel, Columns columns, List<long[]> ranges, boolean seek, long from, long size,
+                  int lo, int hi) {
+            this.channel = channel;
+            this.columns = columns;
+            this.ranges = ranges;
+            this.seek = seek;
+            this.from = from;
+            this.size = size;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected Chunk[] compute() {
+            Chunk[] out = new Chunk[hi - lo];
+            if (hi - lo == 1) {
+                try {
+                    out[0] = parseChunk(ranges.get(lo));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return out;
+            }
+            int mid = (lo + hi) >>> 1;
+            ChunkTask left = new ChunkTask(channel, columns, ranges, seek, from, size, lo, mid);
+            left.fork();
+            Chunk[] right = new ChunkTask(channel, columns, ranges, seek, from, size, mid, hi).compute();
+            Chunk[] leftOut = left.join();
+            System.arraycopy(leftOut, 0, out, 0, leftOut.length);
+            System.arraycopy(right, 0, out, leftOut.length, right.length);
+            return out;
+        }
+
+        private Chunk parseChunk(long[] range) throws IOException {
+            long start = range[0], end = range[1];
+            boolean recordStart = true;
+            if (seek) { // each cut looks no further than the next one, so boundaries stay in order
+                if (start > from) {
+                    start = seekRecord(channel, range[0], range[1]);
+                    recordStart = start >= 0;
+                    if (!recordStart) start = range[1]; // nothing starts in this chunk, resync() joins it to the last
+                }
+                if (end < size) {
+                    long next = Math.min(size, range[1] + (range[1] - range[0]));
+                    end = seekRecord(channel, range[1], next);
+                    if (end < 0) end = next;
+                }
+            }
+            List<CalendarEvent> events = new ArrayList<>();
+            Parser parser = new Parser(columns, events::add);
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(READ_BUFFER, Math.max(1, end - start)));
+            for (long at = start; at < end; ) {
+                buf.clear().limit((int) Math.min(buf.capacity(), end - at));
+                int n = channel.read(buf, at);
+                if (n <= 0) break;
+                parser.feed(buf.flip());
+                at += n;
+            }
+            parser.finish();
+            return new Chunk(start, end, recordStart, events, parser.skipped, parser.quotes);
+        }
+    }
+
+//===================================COLUMNS====================================
+    private static final class Columns {
+        static final Columns DEFAULT = new Columns(0, 1, 2, 3, 4, -1);
+        final int title, description, location, start, end, id;
+
+        Columns(int title, int description, int location, int start, int end, int id) {
+            this.title = title;
+            this.description = description;
+            this.location = location;
+            this.start = start;
+            this.end = end;
+            this.id = id;
+        }
+
+        // null when the record doesn't look like a header
+        static Columns fromHeader(List<String> header) {
+            int title = -1, description = -1, location = -1, start = -1, end = -1, id = -1;
+            for (int i = 0; i < header.size(); i++) {
+                String name = header.get(i).trim().toLowerCase(Locale.ROOT);
+                if (i == 0 && name.startsWith("\uFEFF")) name = name.substring(1); // UTF-8 BOM from Excel
+                switch (name) {
+                    case "title", "summary" -> title = i;
+                    case "description" -> description = i;
+                    case "location" -> location = i;
+                    case "start" -> start = i;
+                    case "end" -> end = i;
+                    case "uid", "id" -> id = i;
+                    default -> { }
+                }
+            }
+            if (start < 0 || end < 0) return null;
+            return new Columns(title, description, location, start, end, id);
+        }
+    }
+
+//===================================STATE MACHINE====================================
+    private static final class Parser {
+        static final int FIELD_START = 0, UNQUOTED = 1, QUOTED = 2, QUOTE_IN_QUOTED = 3;
+
+        private Columns columns; // null: first record decides
+        private final Consumer<CalendarEvent> sink;
+        private Consumer<List<String>> recordSink; // header parsing only
+        private final List<String> record = new ArrayList<>(8);
+        private byte[] field = new byte[256];
+        private int fieldLength;
+        private int state = FIELD_START;
+        int skipped;
+        long quotes; // '"' bytes fed, for readParallel's parity check
+
+        Parser(Columns columns, Consumer<CalendarEvent> sink) {
+            this.columns = columns;
+            this.sink = sink;
+        }
+
+        void feed(ByteBuffer buf) {
+            for (int i = buf.position(), n = buf.limit(); i < n; i++) {
+                byte b = buf.get(i);
+                if (b == '"') quotes++;
+                switch (state) {
+                    case FIELD_START -> {
+                        if (b == '"') {
+                            state = QUOTED;
+                        } else if (b == ',') {
+                            endField();
+                        } else if (b == '\n') {
+                            endRecord();
+                        } else if (b != '\r') {
+                            append(b);
+                            state = UNQUOTED;
+                        }
+                    }
+                    case UNQUOTED -> {
+                        if (b == ',') {
+                            endField();
+                            state = FIELD_START;
+                        } else if (b == '\n') {
+                            endRecord();
+                        } else if (b != '\r') {
+                            append(b);
+                        }
+                    }
+                    case QUOTED -> {
+                        if (b == '"') state = QUOTE_IN_QUOTED;
+                        else append(b);
+                    }
+                    case QUOTE_IN_QUOTED -> {
+                        if (b == '"') { // "" inside quotes
+                            append(b);
+                            state = QUOTED;
+                        } else if (b == ',') {
+                            endField();
+                            state = FIELD_START;
+                        } else if (b == '\n') {
+                            endRecord();
+                        } else if (b != '\r') { // stray text after the closing quote, keep it
+                            append(b);
+                            state = UNQUOTED;
+                        }
+                    }
+                    default -> throw new IllegalStateException();
+                }
+            }
+        }
+
+        void finish() {
+            if (state != FIELD_START || !record.isEmpty()) endRecord();
+        }
+
+        private void append(byte b) {
+            if (fieldLength == field.length) field = Arrays.copyOf(field, field.length * 2);
+            field[fieldLength++] = b;
+        }
+
+        private void endField() {
+            record.add(new String(field, 0, fieldLength, StandardCharsets.UTF_8));
+            fieldLength = 0;
+        }
+
+        private void endRecord() {
+            endField();
+            state = FIELD_START;
+            try {
+                if (record.size() == 1 && record.get(0).isEmpty()) return; // blank line
+                if (recordSink != null) {
+                    recordSink.accept(record);
+                    return;
+                }
+                if (columns == null) {
+                    columns = Columns.fromHeader(record);
+                    if (columns != null) return; // it was the header
+                    columns = Columns.DEFAULT;
+                }
+                CalendarEvent e = toEvent(record);
+                if (e == null) skipped++;
+                else sink.accept(e);
+            } finally {
+                record.clear();
+            }
+        }
+
+        private CalendarEvent toEvent(List<String> r) {
+            if (columns.start >= r.size() || columns.end >= r.size()) return null;
+            try {
+                long start = CalendarEvent.parseIsoMinute(r.get(columns.start).trim());
+                long end = CalendarEvent.parseIsoMinute(r.get(columns.end).trim());
+                String title = column(r, columns.title), description = column(r, columns.description);
+                String location = column(r, columns.location), id = column(r, columns.id);
+                return id.isEmpty()
+                        ? CalendarEvent.withContentId(title, description, location, start, end)
+                        : new CalendarEvent(id, title, description, location, start, end);
+            } catch (DateTimeException bad) {
+                return null;
+            }
+        }
+
+        private static String column(List<String> r, int index) {
+            return index >= 0 && index < r.size() ? r.get(index).trim() : "";
+        }
+    }
+}//End Class
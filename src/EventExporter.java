@@ -0,0 +1,353 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+
+/**
+ * One export in progress: the header is written when it's created, then write(event) per event,
+ * and close() writes the footer and closes the channel. Everything goes through a ChannelTextWriter,
+ * so nothing is kept per event and memory is the same for ten events or ten million.
+ */
+public abstract class EventExporter implements Closeable {
+    protected final ChannelTextWriter out;
+
+    protected EventExporter(ChannelTextWriter out) {
+        this.out = out;
+    }
+
+    public abstract void write(CalendarEvent e) throws IOException;
+
+    // Marks a removed event (CalendarEvent.removal), for delta exports. Only formats that can say "deleted" support it.
+    public void writeRemoved(CalendarEvent removed) throws IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " can't express removals");
+    }
+
+    public boolean writesRemovals() { return false; }
+
+    protected abstract void finish() throws IOException;
+
+    public void writeAll(Iterable<CalendarEvent> events) throws IOException {
+        for (CalendarEvent e : events) write(e);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    public static EventExporter ics(ChannelTextWriter out) throws IOException { return new Ics(out); }
+    public static EventExporter csv(ChannelTextWriter out) throws IOException { return new Csv(out); }
+    public static EventExporter json(ChannelTextWriter out) throws IOException { return new Json(out); }
+    public static EventExporter html(ChannelTextWriter out) throws IOException { return new Html(out); }
+
+//===================================ICS====================================
+    // RFC 5545: CRLF lines folded at 75 octets, TEXT values escaped, times in UTC. Removals go in a VCALENDAR
+    // of their own with METHOD:CANCEL (iTIP, RFC 5546); switching between the two starts a new one.
+    static class Ics extends EventExporter {
+        private static final int MAX_LINE = 75;
+        private final ZoneRules rules = ZoneId.systemDefault().getRules();
+        private final int fixedOffsetMinutes; // used when the zone has no DST, skips the rules lookup
+        private final long stampMinute;       // one DTSTAMP for the whole export
+        private boolean cancelling;           // inside the METHOD:CANCEL calendar
+
+        Ics(ChannelTextWriter out) throws IOException {
+            super(out);
+            fixedOffsetMinutes = rules.isFixedOffset() ? rules.getOffset(Instant.EPOCH).getTotalSeconds() / 60 : 0;
+            stampMinute = Math.floorDiv(System.currentTimeMillis(), 60_000L);
+            header(false);
+        }
+
+        private void header(boolean cancel) throws IOException {
+            out.append("BEGIN:VCALENDAR\r\n")
+                    .append("VERSION:2.0\r\n")
+                    .append("PRODID:-//CalendarSystem//EN\r\n")
+                    .append("CALSCALE:GREGORIAN\r\n");
+            if (cancel) out.append("METHOD:CANCEL\r\n");
+            cancelling = cancel;
+        }
+
+        private void switchTo(boolean cancel) throws IOException {
+            if (cancelling == cancel) return;
+            out.append("END:VCALENDAR\r\n");
+            header(cancel);
+        }
+
+        @Override
+        public void write(CalendarEvent e) throws IOException {
+            switchTo(false);
+            out.append("BEGIN:VEVENT\r\n");
+            uid(e.getId());
+            out.append("DTSTAMP:").appendIcsUtc(stampMinute).append("\r\n");
+            out.append("DTSTART:").appendIcsUtc(toUtc(e.getStartMinute())).append("\r\n");
+            out.append("DTEND:").appendIcsUtc(toUtc(e.getEndMinute())).append("\r\n");
+            property("SUMMARY", e.getTitle(), true);
+            property("DESCRIPTION", e.getDescription(), true);
+            property("LOCATION", e.getLocation(), true);
+            out.append("STATUS:CONFIRMED\r\n")
+                    .append("END:VEVENT\r\n");
+        }
+
+        // Our exports never write SEQUENCE, so 0 before; a cancel has to go above that
+        @Override
+        public void writeRemoved(CalendarEvent removed) throws IOException {
+            switchTo(true);
+            out.append("BEGIN:VEVENT\r\n");
+            uid(removed.getId());
+            out.append("DTSTAMP:").appendIcsUtc(stampMinute).append("\r\n");
+            long start = removed.getStartMinute() == CalendarEvent.NO_TIME ? stampMinute : toUtc(removed.getStartMinute());
+            out.append("DTSTART:").appendIcsUtc(start).append("\r\n");
+            out.append("SEQUENCE:1\r\n")
+                    .append("STATUS:CANCELLED\r\n")
+                    .append("END:VEVENT\r\n");
+        }
+
+        @Override
+        public boolean writesRemovals() { return true; }
+
+        @Override
+        protected void finish() throws IOException {
+            out.append("END:VCALENDAR\r\n");
+        }
+
+        // An instance of a recurring series (IcsReader.instanceId) goes back out as UID + RECURRENCE-ID
+        private void uid(String id) throws IOException {
+            int split = IcsReader.recurrenceSplit(id);
+            if (split < 0) {
+                property("UID", id, false);
+                return;
+            }
+            property("UID", id.substring(0, split), false);
+            out.append("RECURRENCE-ID:").append(id, split + 1, id.length()).append("\r\n");
+        }
+
+        private long toUtc(long localMinute) {
+            if (rules.isFixedOffset()) return localMinute - fixedOffsetMinutes;
+            ZoneOffset offset = rules.getOffset(CalendarEvent.fromEpochMinute(localMinute));
+            return localMinute - offset.getTotalSeconds() / 60;
+        }
+
+        // NAME:value with \ ; , and newlines escaped (TEXT only), folded before any line passes 75 bytes
+        private void property(String name, String value, boolean text) throws IOException {
+            out.append(name).append(':');
+            int lineBytes = name.length() + 1;
+            if (value == null) value = "";
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                String escaped = null;
+                int width;
+                boolean pair = false;
+                if (text && (c == '\\' || c == ';' || c == ',')) {
+                    escaped = "\\" + c;
+                    width = 2;
+                } else if (text && c == '\n') {
+                    escaped = "\\n";
+                    width = 2;
+                } else if (text && c == '\r') {
+                    continue; // \r\n is written as \n
+                } else if (c < 0x80) {
+                    width = 1;
+                } else if (c < 0x800) {
+                    width = 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()) {
+                    width = 4; // keep the pair on one line
+                    pair = true;
+                } else {
+                    width = 3;
+                }
+                if (lineBytes + width > MAX_LINE) {
+                    out.append("\r\n ");
+                    lineBytes = 1;
+                }
+                if (escaped != null) out.append(escaped);
+                else if (pair) out.append(c).append(value.charAt(++i));
+                else out.append(c);
+                lineBytes += width;
+            }
+            out.append("\r\n");
+        }
+    }
+
+//===================================CSV====================================
+    // RFC 4180: every field quoted, quotes doubled, CRLF records. UID last so re-imports update in place.
+    static class Csv extends EventExporter {
+        Csv(ChannelTextWriter out) throws IOException {
+            super(out);
+            out.append("Title,Description,Location,Start,End,UID\r\n");
+        }
+
+        @Override
+        public void write(CalendarEvent e) throws IOException {
+            quoted(e.getTitle());
+            out.append(',');
+            quoted(e.getDescription());
+            out.append(',');
+            quoted(e.getLocation());
+            out.append(",\"").appendIsoMinute(e.getStartMinute())
+                    .append("\",\"").appendIsoMinute(e.getEndMinute()).append("\",");
+            quoted(e.getId());
+            out.append("\r\n");
+        }
+
+        @Override
+        protected void finish() { }
+
+        private void quoted(String value) throws IOException {
+            out.append('"');
+            if (value != null) {
+                int from = 0;
+                for (int q = value.indexOf('"'); q >= 0; q = value.indexOf('"', q + 1)) {
+                    out.append(value, from, q + 1).append('"');
+                    from = q + 1;
+                }
+                out.append(value, from, value.length());
+            }
+            out.append('"');
+        }
+    }
+
+//===================================JSON====================================
+    static class Json extends EventExporter {
+        private boolean first = true;
+
+        Json(ChannelTextWriter out) throws IOException {
+            super(out);
+            out.append("[\n");
+        }
+
+        @Override
+        public void write(CalendarEvent e) throws IOException {
+            out.append(first ? "  {\n" : ",\n  {\n");
+            first = false;
+            out.append("    \"id\": ");
+            string(e.getId());
+            out.append(",\n    \"title\": ");
+            string(e.getTitle());
+            out.append(",\n    \"description\": ");
+            string(e.getDescription());
+            out.append(",\n    \"location\": ");
+            string(e.getLocation());
+            out.append(",\n    \"start\": \"").appendIsoMinute(e.getStartMinute())
+                    .append("\",\n    \"end\": \"").appendIsoMinute(e.getEndMinute()).append("\"\n  }");
+        }
+
+        @Override
+        public void writeRemoved(CalendarEvent removed) throws IOException {
+            out.append(first ? "  {\n" : ",\n  {\n");
+            first = false;
+            out.append("    \"id\": ");
+            string(removed.getId());
+            if (removed.getStartMinute() != CalendarEvent.NO_TIME) {
+                out.append(",\n    \"start\": \"").appendIsoMinute(removed.getStartMinute()).append('"');
+            }
+            out.append(",\n    \"deleted\": true\n  }");
+        }
+
+        @Override
+        public boolean writesRemovals() { return true; }
+
+        @Override
+        protected void finish() throws IOException {
+            out.append(first ? "]\n" : "\n]\n");
+        }
+
+        private void string(String value) throws IOException {
+            out.append('"');
+            if (value != null) {
+                int from = 0;
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+                    if (c >= 0x20 && c != '"' && c != '\\') continue;
+                    out.append(value, from, i);
+                    from = i + 1;
+                    switch (c) {
+                        case '"' -> out.append("\\\"");
+                        case '\\' -> out.append("\\\\");
+                        case '\n' -> out.append("\\n");
+                        case '\r' -> out.append("\\r");
+                        case '\t' -> out.append("\\t");
+                        case '\b' -> out.append("\\b");
+                        case '\f' -> out.append("\\f");
+                        default -> {
+                            out.append("\\u00");
+                            out.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+                        }
+                    }
+                }
+                out.append(value, from, value.length());
+            }
+            out.append('"');
+        }
+    }
+
+//===================================HTML====================================
+    // One <tr> per line with the id in data-uid, so HtmlEventReader can upsert on re-import
+    static class Html extends EventExporter {
+        Html(ChannelTextWriter out) throws IOException {
+            super(out);
+            out.append("<!DOCTYPE html>\n")
+                    .append("<html><head>\n")
+                    .append("<meta charset='UTF-8'>\n")
+                    .append("<title>Calendar Events</title>\n")
+                    .append("<style>\n")
+                    .append("body { font-family: Arial, sans-serif; background: #f6f6f6; padding: 20px; }\n")
+                    .append("h1 { color: #333; }\n")
+                    .append("table { width: 100%; border-collapse: collapse; background: white; }\n")
+                    .append("th, td { border: 1px solid #ccc; padding: 8px; text-align: left; }\n")
+                    .append("th { background-color: #e0e0e0; }\n")
+                    .append("tr:nth-child(even) { background-color: #f9f9f9; }\n")
+                    .append("</style></head><body>\n")
+                    .append("<h1>Calendar Events</h1>\n")
+                    .append("<table id='allEventsTable'>\n")
+                    .append("<tr><th>Title</th><th>Description</th><th>Location</th><th>Start</th><th>End</th></tr>\n");
+        }
+
+        @Override
+        public void write(CalendarEvent e) throws IOException {
+            out.append("<tr data-uid=\"");
+            escaped(e.getId());
+            out.append("\"><td>");
+            escaped(e.getTitle());
+            out.append("</td><td>");
+            escaped(e.getDescription());
+            out.append("</td><td>");
+            escaped(e.getLocation());
+            out.append("</td><td>").appendDisplayMinute(e.getStartMinute())
+                    .append("</td><td>").appendDisplayMinute(e.getEndMinute())
+                    .append("</td></tr>\n");
+        }
+
+        @Override
+        protected void finish() throws IOException {
+            out.append("</table></body></html>\n");
+        }
+
+        // Markup characters as entities and newlines as <br>. Runs with nothing to escape (most values)
+        // are handed to the writer in one append; non-ASCII goes out as UTF-8, the page declares it.
+        private void escaped(String value) throws IOException {
+            if (value == null) return;
+            int from = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c > '>' || (c != '<' && c != '>' && c != '&' && c != '"' && c != '\'' && c != '\n' && c != '\r')) continue;
+                out.append(value, from, i);
+                from = i + 1;
+                switch (c) {
+                    case '<' -> out.append("&lt;");
+                    case '>' -> out.append("&gt;");
+                    case '&' -> out.append("&amp;");
+                    case '"' -> out.append("&quot;");
+                    case '\'' -> out.append("&#x27;");
+                    case '\n' -> out.append("<br>");
+                    default -> { } // \r of a \r\n
+                }
+            }
+            out.append(value, from, value.length());
+        }
+    }
+}//End Class
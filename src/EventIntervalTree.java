@@ -0,0 +1,427 @@
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Balanced (AVL) interval tree of calendar events keyed by start time (epoch minutes).
+ * Every node also remembers the latest end in its subtree, so "what overlaps this window"
+ * skips whole branches that finished before the window opens. Events that share a start
+ * time share a node, and an in-order walk yields events sorted by start.
+ *
+ * Nodes are immutable: a write copies the O(log N) nodes on its path and publishes a new root
+ * through a volatile field. Readers grab the root once and walk it without locking, so they can
+ * never see a half-applied insert. Writers must be serialized by the caller (CalendarSystem holds
+ * a write lock around every mutation).
+ */
+public class EventIntervalTree implements Iterable<CalendarEvent> {
+
+    private static final class Node {
+        final long start;
+        final CalendarEvent[] events;
+        final long maxEnd;
+        final Node left, right;
+        final int height;
+        final int count; // events in this subtree
+
+        Node(long start, CalendarEvent[] events, Node left, Node right) {
+            this.start = start;
+            this.events = events;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.count = events.length + count(left) + count(right);
+            long max = events[0].getEndMinute();
+            for (int i = 1; i < events.length; i++) max = Math.max(max, events[i].getEndMinute());
+            if (left != null) max = Math.max(max, left.maxEnd);
+            if (right != null) max = Math.max(max, right.maxEnd);
+            this.maxEnd = max;
+        }
+
+        Node with(Node newLeft, Node newRight) {
+            return new Node(start, events, newLeft, newRight);
+        }
+    }
+
+    private volatile Node root;
+
+    public int size() { return count(root); }
+    public boolean isEmpty() { return root == null; }
+
+    public void add(CalendarEvent event) {
+        root = insert(root, event);
+    }
+
+    /**
+     * Adds a whole batch with one publish. Small batches go in one by one; a batch that is large
+     * next to the tree is merged with the existing in-order sequence and the tree rebuilt in O(N),
+     * which is much cheaper than N path copies during a bulk import.
+     */
+    public void addAll(Collection<CalendarEvent> batch) {
+        if (batch.isEmpty()) return;
+        Node current = root;
+        if (batch.size() < 64 || batch.size() < count(current) / 8) {
+            for (CalendarEvent e : batch) current = insert(current, e);
+            root = current;
+            return;
+        }
+        CalendarEvent[] incoming = batch.toArray(new CalendarEvent[0]);
+        Arrays.sort(incoming, (a, b) -> Long.compare(a.getStartMinute(), b.getStartMinute()));
+        List<CalendarEvent> merged = new ArrayList<>(count(current) + incoming.length);
+        int[] next = {0};
+        walk(current, e -> {
+            while (next[0] < incoming.length && incoming[next[0]].getStartMinute() < e.getStartMinute()) {
+                merged.add(incoming[next[0]++]);
+            }
+            merged.add(e);
+        });
+        while (next[0] < incoming.length) merged.add(incoming[next[0]++]);
+        List<CalendarEvent[]> groups = groupByStart(merged);
+        root = build(groups, 0, groups.size() - 1);
+    }
+
+    // Removes this exact event (identity), returns false if it was not in the tree
+    public boolean remove(CalendarEvent event) {
+        Node before = root;
+        Node after = delete(before, event);
+        if (after == before) return false;
+        root = after;
+        return true;
+    }
+
+    // Removes these exact events (identity) with one publish; a large batch rebuilds the tree from what's left
+    public void removeAll(Collection<CalendarEvent> batch) {
+        if (batch.isEmpty()) return;
+        Node current = root;
+        if (batch.size() < 64 || batch.size() < count(current) / 8) {
+            for (CalendarEvent e : batch) current = delete(current, e);
+            root = current;
+            return;
+        }
+        Set<CalendarEvent> gone = Collections.newSetFromMap(new IdentityHashMap<>(batch.size() * 4 / 3 + 1));
+        gone.addAll(batch);
+        List<CalendarEvent> kept = new ArrayList<>(Math.max(0, count(current) - batch.size()));
+        walk(current, e -> {
+            if (!gone.contains(e)) kept.add(e);
+        });
+        List<CalendarEvent[]> groups = groupByStart(kept);
+        root = build(groups, 0, groups.size() - 1);
+    }
+
+    public void clear() {
+        root = null;
+    }
+
+    // Frozen copy of the current contents. O(1): nodes are immutable, so the copy just shares the root.
+    public EventIntervalTree snapshot() {
+        EventIntervalTree copy = new EventIntervalTree();
+        copy.root = root;
+        return copy;
+    }
+
+    /**
+     * Up to count events from position from on, in start order (what an in-order walk would give).
+     * Every node knows its subtree's size, so whole subtrees before from are skipped: O(log N + count).
+     */
+    public List<CalendarEvent> window(int from, int count) {
+        Node snapshot = root;
+        List<CalendarEvent> out = new ArrayList<>(Math.max(0, Math.min(count, count(snapshot) - from)));
+        if (from >= 0 && count > 0) collectWindow(snapshot, from, count, out);
+        return out;
+    }
+
+    // Event at position index in start order, O(log N)
+    public CalendarEvent get(int index) {
+        return get(root, index);
+    }
+
+    /**
+     * Read-only list over the current contents in start order. Nothing is copied: get() looks the row up by
+     * rank in O(log N) and iteration walks the tree, so a caller showing a few rows of a huge result only
+     * pays for those. Later edits to this tree don't show through.
+     */
+    public List<CalendarEvent> asList() {
+        EventIntervalTree frozen = snapshot();
+        int size = frozen.size();
+        class View extends AbstractList<CalendarEvent> implements RandomAccess {
+            @Override
+            public CalendarEvent get(int index) {
+                if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+                return frozen.get(index);
+            }
+
+            @Override
+            public int size() { return size; }
+
+            @Override
+            public Iterator<CalendarEvent> iterator() { return frozen.iterator(); }
+        }
+        return new View();
+    }
+
+    // Position the first event starting at or after minute would have, i.e. how many start before it
+    public int countStartingBefore(long minute) {
+        int before = 0;
+        for (Node n = root; n != null; ) {
+            if (n.start < minute) {
+                before += count(n.left) + n.events.length;
+                n = n.right;
+            } else {
+                n = n.left;
+            }
+        }
+        return before;
+    }
+
+    /**
+     * Events overlapping [from, to), sorted by start. An event [s, e) overlaps when s < to and e > from;
+     * zero-length events count when their start lies inside the window.
+     */
+    public List<CalendarEvent> overlapping(LocalDateTime from, LocalDateTime to) {
+        return overlapping(CalendarEvent.toEpochMinute(from), CalendarEvent.toEpochMinute(to));
+    }
+
+    public List<CalendarEvent> overlapping(long fromMinute, long toMinute) {
+        List<CalendarEvent> result = new ArrayList<>();
+        if (fromMinute < toMinute) collectOverlapping(root, fromMinute, toMinute, result);
+        return result;
+    }
+
+    // Events whose start lies in [from, to), sorted by start
+    public List<CalendarEvent> startingBetween(LocalDateTime from, LocalDateTime to) {
+        return startingBetween(CalendarEvent.toEpochMinute(from), CalendarEvent.toEpochMinute(to));
+    }
+
+    public List<CalendarEvent> startingBetween(long fromMinute, long toMinute) {
+        List<CalendarEvent> result = new ArrayList<>();
+        if (fromMinute < toMinute) collectStarting(root, fromMinute, toMinute, result);
+        return result;
+    }
+
+    public boolean anyOverlapping(LocalDateTime from, LocalDateTime to) {
+        return anyOverlapping(CalendarEvent.toEpochMinute(from), CalendarEvent.toEpochMinute(to));
+    }
+
+    public boolean anyOverlapping(long fromMinute, long toMinute) {
+        return fromMinute < toMinute && findAny(root, fromMinute, toMinute);
+    }
+
+    // In-order walk over one snapshot, events arrive sorted by start
+    @Override
+    public void forEach(Consumer<? super CalendarEvent> action) {
+        walk(root, action);
+    }
+
+    // Lazy in-order iterator over the snapshot taken when it was created; O(log N) extra memory
+    @Override
+    public Iterator<CalendarEvent> iterator() {
+        Node snapshot = root;
+        return new Iterator<>() {
+            private final ArrayDeque<Node> path = new ArrayDeque<>();
+            private Node current;
+            private int index;
+
+            { pushLeft(snapshot); }
+
+            private void pushLeft(Node n) {
+                for (; n != null; n = n.left) path.push(n);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return (current != null && index < current.events.length) || !path.isEmpty();
+            }
+
+            @Override
+            public CalendarEvent next() {
+                if (current == null || index >= current.events.length) {
+                    if (path.isEmpty()) throw new NoSuchElementException();
+                    current = path.pop();
+                    index = 0;
+                    pushLeft(current.right);
+                }
+                return current.events[index++];
+            }
+        };
+    }
+
+//===================================QUERIES====================================
+    private static boolean overlaps(CalendarEvent e, long from, long to) {
+        long s = e.getStartMinute();
+        return s < to && (e.getEndMinute() > from || s >= from);
+    }
+
+    private static void collectOverlapping(Node n, long from, long to, List<CalendarEvent> out) {
+        if (n == null || n.maxEnd < from) return; // whole subtree finished before the window
+        collectOverlapping(n.left, from, to, out);
+        if (n.start >= to) return; // this node and everything right of it starts too late
+        for (CalendarEvent e : n.events) {
+            if (overlaps(e, from, to)) out.add(e);
+        }
+        collectOverlapping(n.right, from, to, out);
+    }
+
+    // In-order from position skip on, until out holds want events. Returns what is left of skip.
+    private static int collectWindow(Node n, int skip, int want, List<CalendarEvent> out) {
+        if (n == null || out.size() >= want) return skip;
+        int leftCount = count(n.left);
+        if (skip >= leftCount) skip -= leftCount;
+        else skip = collectWindow(n.left, skip, want, out);
+        for (CalendarEvent e : n.events) {
+            if (out.size() >= want) return skip;
+            if (skip > 0) skip--;
+            else out.add(e);
+        }
+        int rightCount = count(n.right);
+        if (skip >= rightCount) return skip - rightCount;
+        return collectWindow(n.right, skip, want, out);
+    }
+
+    private static CalendarEvent get(Node n, int index) {
+        while (n != null) {
+            int left = count(n.left);
+            if (index < left) {
+                n = n.left;
+            } else if (index < left + n.events.length) {
+                return n.events[index - left];
+            } else {
+                index -= left + n.events.length;
+                n = n.right;
+            }
+        }
+        throw new IndexOutOfBoundsException();
+    }
+
+    private static boolean findAny(Node n, long from, long to) {
+        if (n == null || n.maxEnd < from) return false;
+        if (findAny(n.left, from, to)) return true;
+        if (n.start >= to) return false;
+        for (CalendarEvent e : n.events) {
+            if (overlaps(e, from, to)) return true;
+        }
+        return findAny(n.right, from, to);
+    }
+
+    private static void collectStarting(Node n, long from, long to, List<CalendarEvent> out) {
+        if (n == null) return;
+        boolean afterFrom = n.start >= from;
+        boolean beforeTo = n.start < to;
+        if (afterFrom) collectStarting(n.left, from, to, out);
+        if (afterFrom && beforeTo) out.addAll(Arrays.asList(n.events));
+        if (beforeTo) collectStarting(n.right, from, to, out);
+    }
+
+    private static void walk(Node n, Consumer<? super CalendarEvent> action) {
+        if (n == null) return;
+        walk(n.left, action);
+        for (CalendarEvent e : n.events) action.accept(e);
+        walk(n.right, action);
+    }
+
+//===================================AVL PLUMBING====================================
+    private static Node insert(Node n, CalendarEvent event) {
+        if (n == null) return new Node(event.getStartMinute(), new CalendarEvent[]{event}, null, null);
+        int cmp = Long.compare(event.getStartMinute(), n.start);
+        if (cmp < 0) return balance(n.start, n.events, insert(n.left, event), n.right);
+        if (cmp > 0) return balance(n.start, n.events, n.left, insert(n.right, event));
+        CalendarEvent[] grown = Arrays.copyOf(n.events, n.events.length + 1);
+        grown[n.events.length] = event;
+        return new Node(n.start, grown, n.left, n.right);
+    }
+
+    // Returns the same node when the event was not found so the caller can tell nothing changed
+    private static Node delete(Node n, CalendarEvent event) {
+        if (n == null) return null;
+        int cmp = Long.compare(event.getStartMinute(), n.start);
+        if (cmp < 0) {
+            Node l = delete(n.left, event);
+            return l == n.left ? n : balance(n.start, n.events, l, n.right);
+        }
+        if (cmp > 0) {
+            Node r = delete(n.right, event);
+            return r == n.right ? n : balance(n.start, n.events, n.left, r);
+        }
+        int idx = -1;
+        for (int i = 0; i < n.events.length; i++) {
+            if (n.events[i] == event) { idx = i; break; }
+        }
+        if (idx < 0) return n;
+        if (n.events.length > 1) {
+            CalendarEvent[] shrunk = new CalendarEvent[n.events.length - 1];
+            System.arraycopy(n.events, 0, shrunk, 0, idx);
+            System.arraycopy(n.events, idx + 1, shrunk, idx, shrunk.length - idx);
+            return new Node(n.start, shrunk, n.left, n.right);
+        }
+        // Node went empty, splice in its successor
+        if (n.left == null) return n.right;
+        if (n.right == null) return n.left;
+        Node successor = n.right;
+        while (successor.left != null) successor = successor.left;
+        return balance(successor.start, successor.events, n.left, removeMin(n.right));
+    }
+
+    private static Node removeMin(Node n) {
+        if (n.left == null) return n.right;
+        return balance(n.start, n.events, removeMin(n.left), n.right);
+    }
+
+    private static int height(Node n) { return n == null ? 0 : n.height; }
+    private static int count(Node n) { return n == null ? 0 : n.count; }
+
+    private static Node balance(long start, CalendarEvent[] events, Node left, Node right) {
+        int diff = height(left) - height(right);
+        if (diff > 1) {
+            if (height(left.left) < height(left.right)) {
+                // left-right case
+                Node lr = left.right;
+                return new Node(lr.start, lr.events,
+                        left.with(left.left, lr.left),
+                        new Node(start, events, lr.right, right));
+            }
+            return new Node(left.start, left.events, left.left, new Node(start, events, left.right, right));
+        }
+        if (diff < -1) {
+            if (height(right.right) < height(right.left)) {
+                // right-left case
+                Node rl = right.left;
+                return new Node(rl.start, rl.events,
+                        new Node(start, events, left, rl.left),
+                        right.with(rl.right, right.right));
+            }
+            return new Node(right.start, right.events, new Node(start, events, left, right.left), right.right);
+        }
+        return new Node(start, events, left, right);
+    }
+
+    // Collapses a start-sorted list into one array per distinct start time
+    private static List<CalendarEvent[]> groupByStart(List<CalendarEvent> sorted) {
+        List<CalendarEvent[]> groups = new ArrayList<>();
+        int i = 0;
+        while (i < sorted.size()) {
+            int j = i + 1;
+            long start = sorted.get(i).getStartMinute();
+            while (j < sorted.size() && sorted.get(j).getStartMinute() == start) j++;
+            groups.add(sorted.subList(i, j).toArray(new CalendarEvent[0]));
+            i = j;
+        }
+        return groups;
+    }
+
+    // Perfectly balanced tree over groups[lo..hi]
+    private static Node build(List<CalendarEvent[]> groups, int lo, int hi) {
+        if (lo > hi) return null;
+        int mid = (lo + hi) >>> 1;
+        CalendarEvent[] events = groups.get(mid);
+        return new Node(events[0].getStartMinute(), events, build(groups, lo, mid - 1), build(groups, mid + 1, hi));
+    }
+}//End Class
@@ -0,0 +1,388 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of calendar edits. Each record is
+ *
+ *   int payload length, payload, CRC32 of the payload
+ *   payload: type byte, then for ADD the id, title, description, location (varint length + UTF-8)
+ *            and zigzag varint start/end minutes; for REMOVE the id; CLEAR has nothing; LOAD the file
+ *            name of a snapshot next to the journal that replaces everything before it
+ *
+ * Appending only encodes into an in-memory buffer. A flusher thread writes the buffer out in one go and
+ * fsyncs it according to the FsyncPolicy, so concurrent edits share a single fsync (group commit).
+ * Replay stops at the first torn or corrupt record and the file is cut back to the last good one.
+ * Records are whole-event upserts and deletes, so replaying them over a state that already has
+ * them gives the same result; compaction relies on that.
+ */
+public class EventJournal implements Closeable {
+    public enum FsyncPolicy {
+        EVERY_COMMIT, // awaitDurable blocks until the record is synced; concurrent commits share one fsync
+        INTERVAL,     // synced in the background every GROUP_WINDOW_MILLIS, a crash loses at most that window
+        NONE          // written in the background, syncing left to the OS
+    }
+
+    public interface Replay {
+        void add(CalendarEvent e);
+        void remove(String id);
+        void clear();
+        void load(Path snapshot) throws IOException;
+    }
+
+    static final long GROUP_WINDOW_MILLIS = 20;
+    private static final byte ADD = 1, REMOVE = 2, CLEAR = 3, LOAD = 4;
+    private static final int MAX_RECORD = 64 << 20;
+
+    private final Path path;
+    private final Path rotatedPath;
+    private final FsyncPolicy policy;
+    private final Object io = new Object();   // channel writes and rotation
+    private final Object lock = new Object(); // buffers and sequence numbers
+    private FileChannel channel;
+    private RecordBuffer pending = new RecordBuffer();
+    private RecordBuffer spare = new RecordBuffer();
+    private long appendedSeq, durableSeq;
+    private volatile long fileSize;
+    private IOException failure;
+    private boolean closed;
+    private final Thread flusher;
+
+    private EventJournal(Path path, FsyncPolicy policy, long validLength) throws IOException {
+        this.path = path;
+        this.rotatedPath = rotatedPath(path);
+        this.policy = policy;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.truncate(validLength); // drop a torn tail from the last crash
+        channel.position(validLength);
+        fileSize = validLength;
+        flusher = new Thread(this::flushLoop, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Replays a left-over rotated journal (compaction interrupted by a crash) and then the journal
+     * itself into replay, and opens the journal for appending after its last good record.
+     */
+    public static EventJournal open(Path path, FsyncPolicy policy, Replay replay) throws IOException {
+        Path rotated = rotatedPath(path);
+        if (Files.exists(rotated)) replayFile(rotated, replay);
+        long valid = Files.exists(path) ? replayFile(path, replay) : 0;
+        return new EventJournal(path, policy, valid);
+    }
+
+    private static Path rotatedPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".old");
+    }
+
+//===================================APPENDING====================================
+    // Each returns a sequence number for awaitDurable
+    public long add(CalendarEvent e) {
+        synchronized (lock) {
+            checkOpen();
+            pending.begin(ADD);
+            pending.string(e.getId());
+            pending.string(e.getTitle());
+            pending.string(e.getDescription());
+            pending.string(e.getLocation());
+            pending.varint(CalendarSnapshot.zigzag(e.getStartMinute()));
+            pending.varint(CalendarSnapshot.zigzag(e.getEndMinute()));
+            return committed();
+        }
+    }
+
+    public long remove(String id) {
+        synchronized (lock) {
+            checkOpen();
+            pending.begin(REMOVE);
+            pending.string(id);
+            return committed();
+        }
+    }
+
+    public long clear() {
+        synchronized (lock) {
+            checkOpen();
+            pending.begin(CLEAR);
+            return committed();
+        }
+    }
+
+    // One record for a whole loaded snapshot instead of an ADD per event. The file has to sit next to the
+    // journal and stay there until a compaction has folded it into the main snapshot.
+    public long load(Path snapshot) {
+        synchronized (lock) {
+            checkOpen();
+            pending.begin(LOAD);
+            pending.string(snapshot.getFileName().toString());
+            return committed();
+        }
+    }
+
+    private long committed() {
+        pending.end();
+        lock.notifyAll(); // wake the flusher
+        return ++appendedSeq;
+    }
+
+    private void checkOpen() {
+        if (failure != null) throw new UncheckedIOException("Journal write failed", failure);
+        if (closed) throw new IllegalStateException("Journal is closed");
+    }
+
+    // With EVERY_COMMIT waits until record seq is on disk; with the other policies returns at once
+    public void awaitDurable(long seq) throws IOException {
+        if (policy != FsyncPolicy.EVERY_COMMIT) return;
+        synchronized (lock) {
+            while (durableSeq < seq && failure == null && !closed) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for the journal", e);
+                }
+            }
+            if (durableSeq < seq && failure != null) throw failure;
+        }
+    }
+
+    // Bytes on disk plus bytes waiting to be written
+    public long size() {
+        return fileSize + pending.length;
+    }
+
+//===================================FLUSHING====================================
+    private void flushLoop() {
+        while (true) {
+            synchronized (lock) {
+                while (pending.length == 0 && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.length == 0) return; // closed and drained
+            }
+            try {
+                flush();
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+            if (policy != FsyncPolicy.EVERY_COMMIT) {
+                try {
+                    Thread.sleep(GROUP_WINDOW_MILLIS); // let the next group build up
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Moves everything appended so far to disk
+    private void flush() throws IOException {
+        synchronized (io) {
+            long target;
+            synchronized (lock) {
+                RecordBuffer full = pending;
+                pending = spare;
+                spare = full;
+                target = appendedSeq;
+            }
+            ByteBuffer out = ByteBuffer.wrap(spare.bytes, 0, spare.length);
+            while (out.hasRemaining()) channel.write(out);
+            fileSize += spare.length;
+            spare.length = 0;
+            if (policy != FsyncPolicy.NONE) channel.force(false);
+            synchronized (lock) {
+                durableSeq = target;
+                lock.notifyAll();
+            }
+        }
+    }
+
+//===================================COMPACTION====================================
+    /**
+     * Flushes, then moves the journal aside as the rotated file and starts an empty one. Call it while
+     * no edits are being applied, together with freezing the state that the next snapshot will hold;
+     * once that snapshot is written, dropRotated. If a rotated file is still there (that snapshot failed),
+     * the journal is appended to it instead, so the retry's snapshot covers both. A crash in between only
+     * leaves records in both files, and replaying one twice is harmless.
+     */
+    public void rotate() throws IOException {
+        synchronized (io) {
+            flush();
+            channel.force(true);
+            if (Files.exists(rotatedPath)) {
+                try (FileChannel old = FileChannel.open(rotatedPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    for (long at = 0, size = channel.size(); at < size; ) at += channel.transferTo(at, size - at, old);
+                    old.force(true);
+                }
+                channel.close();
+                Files.delete(path);
+            } else {
+                channel.close();
+                Files.move(path, rotatedPath, StandardCopyOption.ATOMIC_MOVE);
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            fileSize = 0;
+        }
+    }
+
+    public boolean hasRotated() {
+        return Files.exists(rotatedPath);
+    }
+
+    public void dropRotated() throws IOException {
+        Files.deleteIfExists(rotatedPath);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) return;
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (io) {
+            try {
+                if (failure == null) {
+                    flush();
+                    channel.force(true);
+                }
+            } finally {
+                channel.close();
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+//===================================REPLAY====================================
+    // Feeds every intact record to replay, returns the length of the intact prefix. Read into the heap, not
+    // mapped: rotate() moves and deletes these files, which Windows refuses while a mapping is alive.
+    static long replayFile(Path file, Replay replay) throws IOException {
+        ByteBuffer map = CalendarSnapshot.readFully(file);
+        long size = map.limit();
+        if (size == 0) return 0;
+        CRC32 crc = new CRC32();
+        int pos = 0;
+        while (size - pos >= 8) {
+            int length = map.getInt(pos);
+            if (length <= 0 || length > MAX_RECORD || pos + 8L + length > size) break;
+            ByteBuffer payload = map.slice(pos + 4, length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != map.getInt(pos + 4 + length)) break;
+            if (!apply(file, payload, replay)) break;
+            pos += 8 + length;
+        }
+        return pos;
+    }
+
+    // A LOAD whose snapshot can't be read fails the whole replay: skipping it would apply later edits to the wrong state
+    private static boolean apply(Path file, ByteBuffer payload, Replay replay) throws IOException {
+        CalendarSnapshot.BinaryIn in = new CalendarSnapshot.BinaryIn(payload);
+        Path loaded;
+        try {
+            switch (payload.get()) {
+                case ADD -> {
+                    String id = in.string(), title = in.string(), description = in.string(), location = in.string();
+                    long start = CalendarSnapshot.unzigzag(in.varint());
+                    long end = CalendarSnapshot.unzigzag(in.varint());
+                    replay.add(new CalendarEvent(id, title, description, location, start, end));
+                    return true;
+                }
+                case REMOVE -> {
+                    replay.remove(in.string());
+                    return true;
+                }
+                case CLEAR -> {
+                    replay.clear();
+                    return true;
+                }
+                case LOAD -> loaded = file.resolveSibling(in.string());
+                default -> {
+                    return false;
+                }
+            }
+        } catch (IOException | RuntimeException bad) {
+            return false;
+        }
+        replay.load(loaded);
+        return true;
+    }
+
+//===================================ENCODING====================================
+    // Growable record buffer; begin/end frame one record with its length and checksum
+    private static final class RecordBuffer {
+        byte[] bytes = new byte[1 << 16];
+        int length;
+        private int recordStart;
+        private final CRC32 crc = new CRC32();
+
+        void begin(byte type) {
+            recordStart = length;
+            ensure(5);
+            length += 4; // length goes here in end()
+            bytes[length++] = type;
+        }
+
+        void end() {
+            int payload = length - recordStart - 4;
+            putInt(recordStart, payload);
+            crc.reset();
+            crc.update(bytes, recordStart + 4, payload);
+            ensure(4);
+            putInt(length, (int) crc.getValue());
+            length += 4;
+        }
+
+        void varint(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[length++] = (byte) v;
+        }
+
+        void string(String s) {
+            byte[] utf8 = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, length, utf8.length);
+            length += utf8.length;
+        }
+
+        private void putInt(int at, int v) {
+            bytes[at] = (byte) (v >>> 24);
+            bytes[at + 1] = (byte) (v >>> 16);
+            bytes[at + 2] = (byte) (v >>> 8);
+            bytes[at + 3] = (byte) v;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+        }
+    }
+}//End Class
@@ -0,0 +1,133 @@
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Picks the parser from the data instead of the menu item. The first few KB are peeked through a
+ * mark/reset buffer, so the stream is still read exactly once:
+ *   gzip magic 1F 8B           -> inflate on the fly and look again
+ *   zip magic PK\3\4           -> every calendar file inside the archive, one after another
+ *   BEGIN:VCALENDAR            -> ICS
+ *   [ or {                     -> JSON
+ *   <html / <!doctype / <table -> HTML
+ *   a start/end header line, or a line that starts like an exported row -> CSV
+ * If the content says nothing the file name extension decides (.ics.gz counts as .ics).
+ */
+public class FormatDetector {
+    private static final int SNIFF_BYTES = 8192;
+    private static final Pattern CSV_ROW = Pattern.compile("(?s).*,\"?\\d{4}-\\d{2}-\\d{2}[T ]\\d{2}:\\d{2}.*");
+
+    // Detects and parses a file. Plain CSV keeps the parallel chunked path.
+    public static int read(Path path, Consumer<CalendarEvent> sink) throws IOException {
+        String name = path.getFileName().toString();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path), 1 << 16)) {
+            byte[] head = peek(in);
+            if (isGzip(head) || isZip(head) || detect(head, name) != CalendarFormat.CSV) return read(in, name, sink);
+        }
+        return CalendarFormat.CSV.read(path, sink); // maps the file itself, once the sniffing stream is closed
+    }
+
+    // Detects and parses a stream (name may be null). Does not close in.
+    public static int read(InputStream raw, String name, Consumer<CalendarEvent> sink) throws IOException {
+        InputStream in = raw instanceof BufferedInputStream ? raw : new BufferedInputStream(raw, 1 << 16);
+        byte[] head = peek(in);
+        if (isGzip(head)) return read(new GZIPInputStream(in, 1 << 16), stripGz(name), sink);
+        if (isZip(head)) return readZip(new ZipInputStream(in), sink);
+        CalendarFormat format = detect(head, name);
+        if (format == null) throw new IOException("Unrecognised calendar data" + (name == null ? "" : ": " + name));
+        return format.read(in, sink);
+    }
+
+    // Whether a directory listing should pick this file up
+    public static boolean looksLikeCalendarFile(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".zip") || CalendarFormat.fromFileName(stripGz(name)) != null;
+    }
+
+    // Every entry the detector recognises; anything else in the archive (readme, images) is passed over
+    private static int readZip(ZipInputStream zip, Consumer<CalendarEvent> sink) throws IOException {
+        int skipped = 0;
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            String name = entry.getName();
+            if (entry.isDirectory() || name.startsWith("__MACOSX/") || name.contains("/.")) continue;
+            InputStream body = new BufferedInputStream(new FilterInputStream(zip) {
+                @Override
+                public void close() { } // the readers must not close the archive
+            }, 1 << 16);
+            byte[] head = peek(body);
+            if (isGzip(head) || isZip(head) || detect(head, name) != null) skipped += read(body, name, sink);
+        }
+        return skipped;
+    }
+
+//===================================SNIFFING====================================
+    static CalendarFormat detect(byte[] head, String name) {
+        CalendarFormat sniffed = sniff(head);
+        if (sniffed != null || name == null) return sniffed;
+        return CalendarFormat.fromFileName(stripGz(name));
+    }
+
+    static CalendarFormat sniff(byte[] head) {
+        int i = 0;
+        if (head.length >= 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF) i = 3;
+        while (i < head.length && (head[i] == ' ' || head[i] == '\t' || head[i] == '\r' || head[i] == '\n')) i++;
+        if (i == head.length) return null;
+        String text = new String(head, i, head.length - i, StandardCharsets.UTF_8);
+        String lower = text.toLowerCase(Locale.ROOT);
+
+        if (lower.startsWith("begin:vcalendar")) return CalendarFormat.ICS;
+        if (text.charAt(0) == '[' || text.charAt(0) == '{') return CalendarFormat.JSON;
+        if (text.charAt(0) == '<') {
+            return lower.contains("<html") || lower.contains("<!doctype html") || lower.contains("<table")
+                    ? CalendarFormat.HTML : null;
+        }
+        int eol = text.indexOf('\n');
+        String firstLine = (eol < 0 ? lower : lower.substring(0, eol)).replace("\"", "");
+        if (firstLine.contains(",")) {
+            boolean header = false;
+            for (String column : firstLine.split(",")) {
+                if (column.trim().equals("start")) header = true;
+            }
+            if (header || CSV_ROW.matcher(firstLine).matches()) return CalendarFormat.CSV;
+        }
+        return null;
+    }
+
+    private static boolean isGzip(byte[] head) {
+        return head.length >= 2 && (head[0] & 0xFF) == 0x1F && (head[1] & 0xFF) == 0x8B;
+    }
+
+    private static boolean isZip(byte[] head) {
+        return head.length >= 4 && head[0] == 'P' && head[1] == 'K' && head[2] == 3 && head[3] == 4;
+    }
+
+    private static String stripGz(String name) {
+        if (name == null) return null;
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".gz")) return name.substring(0, name.length() - 3);
+        if (lower.endsWith(".gzip")) return name.substring(0, name.length() - 5);
+        return name;
+    }
+
+    // Up to SNIFF_BYTES from the front of in, which is left where it was
+    private static byte[] peek(InputStream in) throws IOException {
+        byte[] head = new byte[SNIFF_BYTES];
+        in.mark(SNIFF_BYTES);
+        int n = 0, r;
+        while (n < head.length && (r = in.read(head, n, head.length - n)) > 0) n += r;
+        in.reset();
+        return n == head.length ? head : Arrays.copyOf(head, n);
+    }
+}//End Class
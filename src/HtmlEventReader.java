@@ -0,0 +1,436 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Streaming reader for HTML tables of events, as written by the HTML export or by a spreadsheet or a
+ * hand-edited page. It's a small tag tokenizer, not a line matcher: rows and cells may be split across
+ * lines or all on one, tags may carry attributes in any case, </td> and </tr> may be left out, comments
+ * and <script>/<style> are passed over, entities (&amp; &lt; &#233; &#xE9; &nbsp; ...) are decoded and
+ * whitespace collapses the way a browser shows it, with <br> kept as a newline.
+ *
+ * Columns come from a header row (Title/Summary, Description, Location, Start, End, UID/Id) when the
+ * table has one, else they're taken as Title, Description, Location, Start, End in that order. A
+ * data-uid attribute on the <tr> also gives the id. Rows without a readable start and end are skipped
+ * and counted; one row is held in memory at a time.
+ */
+public class HtmlEventReader implements Closeable {
+    private static final int TITLE = 0, DESCRIPTION = 1, LOCATION = 2, START = 3, END = 4, UID = 5;
+    private static final int[] POSITIONAL = {0, 1, 2, 3, 4, -1};
+
+    private final Reader in;
+    private final char[] buf = new char[1 << 16];
+    private int pos, limit;
+    private final StringBuilder name = new StringBuilder(16);
+
+    private int[] columns = POSITIONAL;
+    private boolean headerSeen;           // first row of the current table has been looked at
+    private final List<String> cells = new ArrayList<>(8);
+    private StringBuilder cell;           // null outside a <td>/<th>
+    private boolean inRow, headerCells, pendingSpace;
+    private String rowUid;
+    private int skipped;
+
+    public HtmlEventReader(Reader in) {
+        this.in = in;
+    }
+
+    public static HtmlEventReader open(Path path) throws IOException {
+        return new HtmlEventReader(Files.newBufferedReader(path, StandardCharsets.UTF_8));
+    }
+
+    // Feeds every event of the file to sink, returns how many rows were skipped
+    public static int read(Path path, Consumer<CalendarEvent> sink) throws IOException {
+        try (HtmlEventReader reader = open(path)) {
+            reader.forEach(sink);
+            return reader.getSkipped();
+        }
+    }
+
+    public int getSkipped() { return skipped; }
+
+    public void forEach(Consumer<CalendarEvent> sink) throws IOException {
+        CalendarEvent e;
+        while ((e = next()) != null) sink.accept(e);
+    }
+
+    // Next event, or null at the end of the input
+    public CalendarEvent next() throws IOException {
+        while (true) {
+            if (pos >= limit && !fill()) return endRow(); // a last row left open counts too
+            if (buf[pos] == '<') {
+                pos++;
+                CalendarEvent e = tag();
+                if (e != null) return e;
+            } else if (cell != null) {
+                text();
+            } else {
+                // text between cells is not ours, skip to the next tag
+                while (pos < limit && buf[pos] != '<') pos++;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+//===================================TAGS====================================
+    // After a '<'. Returns an event when the tag ends a row.
+    private CalendarEvent tag() throws IOException {
+        int c = peek();
+        if (c == '!' || c == '?') { // comment, doctype, processing instruction
+            pos++;
+            if (peek() == '-') skipComment();
+            else skipPast('>');
+            return null;
+        }
+        boolean closing = c == '/';
+        if (closing) {
+            pos++;
+            c = peek();
+        }
+        if (!isLetter(c)) { // a stray '<' is just text
+            if (cell != null) append(closing ? "</" : "<");
+            return null;
+        }
+        readName();
+        String uid = attributes(!closing && "tr".contentEquals(name));
+        String tag = name.toString();
+
+        switch (tag) {
+            case "tr":
+                CalendarEvent e = endRow();
+                if (!closing) {
+                    inRow = true;
+                    rowUid = uid;
+                }
+                return e;
+            case "td", "th":
+                endCell();
+                if (!closing) {
+                    if (!inRow) { // cell without a <tr>
+                        inRow = true;
+                        rowUid = null;
+                    }
+                    if (tag.equals("th")) headerCells = true;
+                    cell = new StringBuilder();
+                    pendingSpace = false;
+                }
+                return null;
+            case "table":
+                CalendarEvent last = endRow();
+                columns = POSITIONAL; // every table brings its own header
+                headerSeen = false;
+                return last;
+            case "br":
+                if (cell != null) {
+                    cell.append('\n');
+                    pendingSpace = false;
+                }
+                return null;
+            case "p", "div", "li":
+                if (cell != null) pendingSpace = true;
+                return null;
+            case "script", "style":
+                if (!closing) skipRawText(tag);
+                return null;
+            default:
+                return null; // <b>, <span>, <a> ... only their text counts
+        }
+    }
+
+    // Attributes up to and including '>'. Returns data-uid when wanted.
+    private String attributes(boolean wantUid) throws IOException {
+        String uid = null;
+        while (true) {
+            int c = read();
+            if (c == -1 || c == '>') return uid;
+            if (c == '"' || c == '\'') {
+                skipPast((char) c);
+            } else if (wantUid && isLetter(c)) {
+                StringBuilder attr = new StringBuilder().append((char) c);
+                while (true) {
+                    int d = peek();
+                    if (d == -1 || d == '=' || d == '>' || d == '/' || Character.isWhitespace(d)) break;
+                    attr.append((char) Character.toLowerCase(d));
+                    pos++;
+                }
+                if (!attr.toString().equalsIgnoreCase("data-uid")) continue;
+                int d;
+                while ((d = peek()) != -1 && Character.isWhitespace(d)) pos++;
+                if (d != '=') continue;
+                pos++;
+                while ((d = peek()) != -1 && Character.isWhitespace(d)) pos++;
+                StringBuilder value = new StringBuilder();
+                if (d == '"' || d == '\'') {
+                    pos++;
+                    int e;
+                    while ((e = read()) != -1 && e != d) value.append((char) e);
+                } else {
+                    while ((d = peek()) != -1 && d != '>' && !Character.isWhitespace(d)) {
+                        value.append((char) d);
+                        pos++;
+                    }
+                }
+                uid = decodeEntities(value.toString());
+            }
+        }
+    }
+
+//===================================ROWS====================================
+    private void endCell() {
+        if (cell == null) return;
+        cells.add(cell.toString());
+        cell = null;
+    }
+
+    // Closes the open row: a header sets the columns, anything else becomes an event or a skip
+    private CalendarEvent endRow() {
+        endCell();
+        if (!inRow) return null;
+        inRow = false;
+        boolean th = headerCells;
+        headerCells = false;
+        String uid = rowUid;
+        rowUid = null;
+        if (cells.isEmpty()) return null;
+        try {
+            if (!headerSeen) {
+                headerSeen = true;
+                int[] header = header(cells);
+                if (header != null) {
+                    columns = header;
+                    return null;
+                }
+            }
+            if (th) return null; // a header we don't understand, not data
+
+            String start = cell(START), end = cell(END);
+            if (start.isEmpty() || end.isEmpty()) {
+                skipped++;
+                return null;
+            }
+            try {
+                long startMinute = parseMinute(start);
+                long endMinute = parseMinute(end);
+                String id = cell(UID);
+                if (id.isEmpty() && uid != null) id = uid.trim();
+                return id.isEmpty()
+                        ? CalendarEvent.withContentId(cell(TITLE), cell(DESCRIPTION), cell(LOCATION), startMinute, endMinute)
+                        : new CalendarEvent(id, cell(TITLE), cell(DESCRIPTION), cell(LOCATION), startMinute, endMinute);
+            } catch (DateTimeException | IndexOutOfBoundsException bad) {
+                skipped++;
+                return null;
+            }
+        } finally {
+            cells.clear();
+        }
+    }
+
+    private String cell(int field) {
+        int i = columns[field];
+        return i >= 0 && i < cells.size() ? cells.get(i) : "";
+    }
+
+    // Column positions when the row names at least start and end, else null
+    private static int[] header(List<String> row) {
+        int[] found = {-1, -1, -1, -1, -1, -1};
+        for (int i = 0; i < row.size(); i++) {
+            switch (row.get(i).trim().toLowerCase(Locale.ROOT)) {
+                case "title", "summary", "event" -> found[TITLE] = i;
+                case "description", "notes" -> found[DESCRIPTION] = i;
+                case "location", "where" -> found[LOCATION] = i;
+                case "start", "starts", "begin" -> found[START] = i;
+                case "end", "ends", "finish" -> found[END] = i;
+                case "uid", "id" -> found[UID] = i;
+                default -> { }
+            }
+        }
+        return found[START] >= 0 && found[END] >= 0 ? found : null;
+    }
+
+    // yyyy-MM-dd HH:mm as the export writes it, or ISO with a T
+    private static long parseMinute(String s) {
+        s = s.trim();
+        if (s.length() > 10 && s.charAt(10) == ' ') s = s.substring(0, 10) + 'T' + s.substring(11).trim();
+        return CalendarEvent.parseIsoMinute(s);
+    }
+
+//===================================TEXT====================================
+    // Cell text up to the next tag: runs without '&' or extra whitespace are copied in one go
+    private void text() throws IOException {
+        while (pos < limit) {
+            char ch = buf[pos];
+            if (ch == '<') return;
+            if (ch == '&') {
+                pos++;
+                entity();
+            } else if (ch == ' ' || ch == '\n' || ch == '\r' || ch == '\t' || ch == '\f') {
+                pos++;
+                pendingSpace = true;
+            } else {
+                int runStart = pos;
+                while (pos < limit) {
+                    ch = buf[pos];
+                    if (ch == ' ' && pos + 1 < limit && !isSpaceOrMarkup(buf[pos + 1])) { // a lone space between words
+                        pos += 2;
+                        continue;
+                    }
+                    if (isSpaceOrMarkup(ch)) break;
+                    pos++;
+                }
+                spaceIfPending();
+                cell.append(buf, runStart, pos - runStart);
+            }
+        }
+    }
+
+    private static boolean isSpaceOrMarkup(char ch) {
+        return ch == '<' || ch == '&' || ch == ' ' || ch == '\n' || ch == '\r' || ch == '\t' || ch == '\f';
+    }
+
+    private void append(CharSequence s) {
+        spaceIfPending();
+        cell.append(s);
+    }
+
+    private void spaceIfPending() {
+        if (pendingSpace && cell.length() > 0 && cell.charAt(cell.length() - 1) != '\n') cell.append(' ');
+        pendingSpace = false;
+    }
+
+    // After '&': a known entity is decoded, anything else stays as written
+    private void entity() throws IOException {
+        name.setLength(0);
+        int c;
+        while (name.length() < 10 && (c = peek()) != -1 && (Character.isLetterOrDigit(c) || (c == '#' && name.length() == 0))) {
+            name.append((char) c);
+            pos++;
+        }
+        boolean semicolon = peek() == ';';
+        int decoded = decode(name);
+        if (decoded < 0) {
+            append("&");
+            append(name);
+            return;
+        }
+        if (semicolon) pos++;
+        spaceIfPending();
+        cell.appendCodePoint(decoded);
+    }
+
+    // Code point for an entity name (without & and ;), -1 if unknown
+    private static int decode(CharSequence entity) {
+        int n = entity.length();
+        if (n > 1 && entity.charAt(0) == '#') {
+            boolean hex = entity.charAt(1) == 'x' || entity.charAt(1) == 'X';
+            int cp = 0;
+            for (int i = hex ? 2 : 1; i < n; i++) {
+                int d = Character.digit(entity.charAt(i), hex ? 16 : 10);
+                if (d < 0 || cp > 0x10FFFF) return -1;
+                cp = cp * (hex ? 16 : 10) + d;
+            }
+            return n > (hex ? 2 : 1) && Character.isValidCodePoint(cp) && cp != 0 ? cp : -1;
+        }
+        return switch (entity.toString()) {
+            case "amp" -> '&';
+            case "lt" -> '<';
+            case "gt" -> '>';
+            case "quot" -> '"';
+            case "apos" -> '\'';
+            case "nbsp" -> ' '; // as a plain space, so it trims and searches like one
+            case "ndash" -> '–';
+            case "mdash" -> '—';
+            case "hellip" -> '…';
+            case "copy" -> '©';
+            default -> -1;
+        };
+    }
+
+    // For attribute values, which are short
+    private static String decodeEntities(String s) {
+        if (s.indexOf('&') < 0) return s;
+        StringBuilder out = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            int end = ch == '&' ? s.indexOf(';', i) : -1;
+            int cp = end > i ? decode(s.substring(i + 1, end)) : -1;
+            if (cp < 0) {
+                out.append(ch);
+            } else {
+                out.appendCodePoint(cp);
+                i = end;
+            }
+        }
+        return out.toString();
+    }
+
+//===================================CHAR PLUMBING====================================
+    private void readName() throws IOException {
+        name.setLength(0);
+        int c;
+        while ((c = peek()) != -1 && (Character.isLetterOrDigit(c) || c == '-' || c == ':')) {
+            name.append((char) Character.toLowerCase(c));
+            pos++;
+        }
+    }
+
+    // <!-- ... --> (the "<!" is consumed)
+    private void skipComment() throws IOException {
+        int dashes = 0, c;
+        while ((c = read()) != -1) {
+            if (c == '>' && dashes >= 2) return;
+            dashes = c == '-' ? dashes + 1 : 0;
+        }
+    }
+
+    // Everything up to the matching </script> or </style>, which is consumed too
+    private void skipRawText(String tag) throws IOException {
+        int c;
+        while ((c = read()) != -1) {
+            if (c != '<' || peek() != '/') continue;
+            pos++;
+            readName();
+            if (tag.contentEquals(name)) {
+                skipPast('>');
+                return;
+            }
+        }
+    }
+
+    private void skipPast(char end) throws IOException {
+        int c;
+        while ((c = read()) != -1 && c != end) { }
+    }
+
+    private static boolean isLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private boolean fill() throws IOException {
+        pos = 0;
+        limit = 0;
+        int n = in.read(buf, 0, buf.length);
+        if (n <= 0) return false;
+        limit = n;
+        return true;
+    }
+
+    private int peek() throws IOException {
+        if (pos >= limit && !fill()) return -1;
+        return buf[pos];
+    }
+
+    private int read() throws IOException {
+        if (pos >= limit && !fill()) return -1;
+        return buf[pos++];
+    }
+}//End Class
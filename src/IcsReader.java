@@ -0,0 +1,353 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.*;
+import java.time.zone.ZoneRules;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Single pass VEVENT reader for .ics files (RFC 5545). Pulls one event at a time, so memory does not
+ * grow with the file. Handles folded lines, property parameters (TZID=..., VALUE=DATE), escaped text
+ * and DURATION. Times come back as local wall clock: UTC ("Z") and TZID times are shifted into the
+ * system zone, floating times are kept as written, all-day dates start at midnight. A cancelled event
+ * (STATUS:CANCELLED, or any event in a METHOD:CANCEL calendar) comes back as CalendarEvent.removal.
+ * The master of a recurring series and each overridden instance share a UID and only differ by
+ * RECURRENCE-ID, so an instance gets the id UID/RECURRENCE-ID (see instanceId) and upserts on its own.
+ * Events that can't be parsed are skipped and counted instead of stopping the import.
+ */
+public class IcsReader implements Closeable {
+    private final BufferedReader in;
+    private final ZoneId localZone = ZoneId.systemDefault();
+    private final ZoneRules localRules = localZone.getRules();
+    private final Map<String, Optional<ZoneId>> zoneCache = new HashMap<>(); // empty: TZID we don't know
+    private final StringBuilder unfolded = new StringBuilder(256);
+    private String lookahead;
+    private int skipped;
+
+    // Fields of the VEVENT being read
+    private boolean inEvent;
+    private boolean cancelCalendar; // METHOD:CANCEL on the enclosing VCALENDAR
+    private int nested; // depth of sub-components (VALARM ...) inside the VEVENT; their properties aren't the event's
+    private String uid, recurrenceId, title, description, location, duration;
+    private long start, end;
+    private boolean hasStart, hasEnd, allDay, broken, cancelled;
+
+    public IcsReader(Reader in) {
+        this.in = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in, 1 << 16);
+    }
+
+    public static IcsReader open(Path path) throws IOException {
+        return new IcsReader(Files.newBufferedReader(path, StandardCharsets.UTF_8));
+    }
+
+    // Feeds every event of the file to sink
+    public static int read(Path path, Consumer<CalendarEvent> sink) throws IOException {
+        try (IcsReader reader = open(path)) {
+            reader.forEach(sink);
+            return reader.getSkipped();
+        }
+    }
+
+    public int getSkipped() { return skipped; }
+
+    public void forEach(Consumer<CalendarEvent> sink) throws IOException {
+        CalendarEvent e;
+        while ((e = next()) != null) sink.accept(e);
+    }
+
+    // Lazy stream over the remaining events, IOExceptions come out as UncheckedIOException
+    public Stream<CalendarEvent> stream() {
+        Spliterator<CalendarEvent> split = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super CalendarEvent> action) {
+                try {
+                    CalendarEvent e = next();
+                    if (e == null) return false;
+                    action.accept(e);
+                    return true;
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        };
+        return StreamSupport.stream(split, false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+    }
+
+    // Next complete VEVENT, or null at end of input
+    public CalendarEvent next() throws IOException {
+        String line;
+        while ((line = nextUnfoldedLine()) != null) {
+            int colon = valueStart(line);
+            if (colon < 0) continue;
+            String name = propertyName(line, colon);
+
+            if (!inEvent) {
+                if (name.equals("BEGIN") && line.regionMatches(true, colon + 1, "VEVENT", 0, 6)) beginEvent();
+                else if (name.equals("METHOD")) cancelCalendar = line.substring(colon + 1).trim().equalsIgnoreCase("CANCEL");
+                else if (name.equals("END") && line.regionMatches(true, colon + 1, "VCALENDAR", 0, 9)) cancelCalendar = false;
+                continue;
+            }
+            if (name.equals("BEGIN")) {
+                nested++;
+                continue;
+            }
+            if (name.equals("END")) {
+                if (nested > 0) nested--;
+                else if (line.regionMatches(true, colon + 1, "VEVENT", 0, 6)) {
+                    inEvent = false;
+                    CalendarEvent e = finishEvent();
+                    if (e != null) return e;
+                }
+                continue;
+            }
+            if (nested > 0) continue;
+
+            String value = line.substring(colon + 1);
+            try {
+                switch (name) {
+                    case "UID" -> uid = value;
+                    case "RECURRENCE-ID" -> recurrenceId = value.trim();
+                    case "SUMMARY" -> title = unescape(value);
+                    case "DESCRIPTION" -> description = unescape(value);
+                    case "LOCATION" -> location = unescape(value);
+                    case "DURATION" -> duration = value;
+                    case "STATUS" -> cancelled = value.trim().equalsIgnoreCase("CANCELLED");
+                    case "DTSTART" -> {
+                        allDay = isDateOnly(line, colon, value);
+                        start = parseTime(value, param(line, colon, "TZID"), allDay);
+                        hasStart = true;
+                    }
+                    case "DTEND" -> {
+                        end = parseTime(value, param(line, colon, "TZID"), isDateOnly(line, colon, value));
+                        hasEnd = true;
+                    }
+                    default -> { } // DTSTAMP, STATUS, RRULE ... not kept
+                }
+            } catch (RuntimeException bad) {
+                broken = true; // skipped at END:VEVENT
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+//===================================EVENT ASSEMBLY====================================
+    private void beginEvent() {
+        inEvent = true;
+        nested = 0;
+        uid = recurrenceId = duration = null;
+        title = description = location = "";
+        hasStart = hasEnd = allDay = broken = false;
+        cancelled = cancelCalendar;
+        start = end = 0;
+    }
+
+    private CalendarEvent finishEvent() {
+        if (uid != null && !uid.isEmpty() && recurrenceId != null && !recurrenceId.isEmpty()) uid = instanceId(uid, recurrenceId);
+        if (cancelled && uid != null && !uid.isEmpty()) return CalendarEvent.removal(uid, hasStart && !broken ? start : CalendarEvent.NO_TIME);
+        if (!hasStart || broken) {
+            skipped++;
+            return null;
+        }
+        long endMinute;
+        if (hasEnd) endMinute = end;
+        else if (duration != null) {
+            try {
+                endMinute = start + durationMinutes(duration);
+            } catch (RuntimeException bad) {
+                skipped++;
+                return null;
+            }
+        } else endMinute = allDay ? start + 24 * 60 : start;
+
+        if (uid == null || uid.isEmpty()) return CalendarEvent.withContentId(title, description, location, start, endMinute);
+        return new CalendarEvent(uid, title, description, location, start, endMinute);
+    }
+
+    // Id of one instance of a recurring series. The exporter splits it back into UID and RECURRENCE-ID.
+    static String instanceId(String uid, String recurrenceId) {
+        return uid + "/" + recurrenceId;
+    }
+
+    // Where the "/RECURRENCE-ID" part of an instanceId starts, or -1 for a plain UID. The part has to look
+    // like an ICS date or date-time, so a UID that merely contains a slash stays whole.
+    static int recurrenceSplit(String id) {
+        int slash = id.lastIndexOf('/');
+        if (slash <= 0) return -1;
+        int n = id.length() - slash - 1;
+        if (n != 8 && n != 15 && n != 16) return -1;
+        for (int i = 0; i < n; i++) {
+            char c = id.charAt(slash + 1 + i);
+            boolean ok = i == 8 ? c == 'T' : i == 15 ? c == 'Z' : c >= '0' && c <= '9';
+            if (!ok) return -1;
+        }
+        return slash;
+    }
+
+    // RFC 5545 dur-value: [+/-]P then weeks (P2W), or days and/or a time part (P1DT2H30M, PT15M)
+    static long durationMinutes(String value) {
+        String v = value.trim();
+        boolean negative = v.startsWith("-");
+        if (negative || v.startsWith("+")) v = v.substring(1);
+        int t = v.indexOf('T');
+        long minutes = 0;
+        if (t != 1) { // there is a date part: P1W, P3D, P3DT...
+            Period days = Period.parse(t < 0 ? v : v.substring(0, t)); // W and D are all RFC 5545 allows
+            if (days.getYears() != 0 || days.getMonths() != 0) throw new DateTimeException("Bad ICS duration: " + value);
+            minutes = days.getDays() * 24L * 60;
+        }
+        if (t >= 0) minutes += Duration.parse("PT" + v.substring(t + 1)).toMinutes();
+        return negative ? -minutes : minutes;
+    }
+
+//===================================LINE PLUMBING====================================
+    // Joins RFC 5545 folded lines: a line starting with a space or tab continues the previous one
+    private String nextUnfoldedLine() throws IOException {
+        String line = lookahead != null ? lookahead : in.readLine();
+        lookahead = null;
+        if (line == null) return null;
+        String following = in.readLine();
+        if (following == null || following.isEmpty() || !isFold(following)) {
+            lookahead = following;
+            return line;
+        }
+        unfolded.setLength(0);
+        unfolded.append(line);
+        while (following != null && !following.isEmpty() && isFold(following)) {
+            unfolded.append(following, 1, following.length());
+            following = in.readLine();
+        }
+        lookahead = following;
+        return unfolded.toString();
+    }
+
+    private static boolean isFold(String line) {
+        char c = line.charAt(0);
+        return c == ' ' || c == '\t';
+    }
+
+    // Index of the ':' that separates name;params from the value (colons inside quoted params don't count)
+    private static int valueStart(String line) {
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') quoted = !quoted;
+            else if (c == ':' && !quoted) return i;
+        }
+        return -1;
+    }
+
+    private static String propertyName(String line, int colon) {
+        int end = line.indexOf(';');
+        if (end < 0 || end > colon) end = colon;
+        int begin = 0;
+        while (begin < end && line.charAt(begin) == ' ') begin++; // tolerate indented files
+        return line.substring(begin, end).toUpperCase(Locale.ROOT);
+    }
+
+    // Value of one property parameter (e.g. TZID), quotes stripped, or null
+    private static String param(String line, int colon, String name) {
+        int i = line.indexOf(';');
+        while (i >= 0 && i < colon) {
+            int eq = line.indexOf('=', i);
+            if (eq < 0 || eq > colon) return null;
+            int next = i + 1;
+            boolean quoted = false;
+            int stop = eq + 1;
+            while (stop < colon) {
+                char c = line.charAt(stop);
+                if (c == '"') quoted = !quoted;
+                else if (c == ';' && !quoted) break;
+                stop++;
+            }
+            if (line.substring(next, eq).trim().equalsIgnoreCase(name)) {
+                String value = line.substring(eq + 1, stop);
+                return value.length() >= 2 && value.startsWith("\"") ? value.substring(1, value.length() - 1) : value;
+            }
+            i = stop < colon ? stop : -1;
+        }
+        return null;
+    }
+
+    private static boolean isDateOnly(String line, int colon, String value) {
+        String type = param(line, colon, "VALUE");
+        return (type != null && type.equalsIgnoreCase("DATE")) || value.length() == 8;
+    }
+
+    // RFC 5545 TEXT escapes: \n \N \\ \; \,
+    static String unescape(String value) {
+        int slash = value.indexOf('\\');
+        if (slash < 0) return value;
+        StringBuilder out = new StringBuilder(value.length());
+        out.append(value, 0, slash);
+        for (int i = slash; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char n = value.charAt(++i);
+                out.append(n == 'n' || n == 'N' ? '\n' : n);
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+//===================================TIME PARSING====================================
+    // yyyyMMdd or yyyyMMdd'T'HHmmss[Z] -> local epoch minute, without going through DateTimeFormatter
+    private long parseTime(String value, String tzid, boolean dateOnly) {
+        int year = digits(value, 0, 4);
+        int month = digits(value, 4, 2);
+        int day = digits(value, 6, 2);
+        long minute = LocalDate.of(year, month, day).toEpochDay() * 24 * 60;
+        if (dateOnly) return minute;
+        if (value.length() < 15 || value.charAt(8) != 'T') throw new DateTimeException("Bad ICS time: " + value);
+        minute += digits(value, 9, 2) * 60L + digits(value, 11, 2);
+        if (digits(value, 13, 2) != 0) throw new DateTimeException("Seconds are not supported: " + value); // skipped, not moved
+
+        if (value.length() > 15 && value.charAt(15) == 'Z') {
+            Instant instant = Instant.ofEpochSecond(minute * 60);
+            return minute + localRules.getOffset(instant).getTotalSeconds() / 60;
+        }
+        if (tzid != null) {
+            ZoneId zone = zoneCache.computeIfAbsent(tzid, IcsReader::zoneOf).orElse(localZone);
+            if (!zone.equals(localZone)) {
+                LocalDateTime wall = CalendarEvent.fromEpochMinute(minute);
+                return CalendarEvent.toEpochMinute(wall.atZone(zone).withZoneSameInstant(localZone).toLocalDateTime());
+            }
+        }
+        return minute; // floating time, or a TZID we don't know
+    }
+
+    private static Optional<ZoneId> zoneOf(String tzid) {
+        try {
+            return Optional.of(ZoneId.of(tzid));
+        } catch (DateTimeException unknown) {
+            return Optional.empty();
+        }
+    }
+
+    private static int digits(String s, int from, int count) {
+        int v = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') throw new DateTimeException("Bad ICS time: " + s);
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+}//End Class
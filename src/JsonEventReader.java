@@ -0,0 +1,268 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.util.function.Consumer;
+
+/**
+ * Streaming reader for the JSON export format: an array of flat objects with title, description,
+ * location, start and end (ISO local date-times), plus an optional id. Reads one object at a time
+ * straight off a Reader with a small fixed buffer, so memory stays flat however big the file is.
+ * Strings are fully unescaped (\" \\ \/ \b \f \n \r \t \\uXXXX); unknown fields of any shape are skipped.
+ * A lone object instead of an array is accepted too. Objects without a readable start/end are skipped and counted.
+ * {"id": ..., "deleted": true} (a delta export's removal) comes back as CalendarEvent.removal.
+ */
+public class JsonEventReader implements Closeable {
+    private final Reader in;
+    private final char[] buf = new char[1 << 16];
+    private int pos, limit;
+    private long consumed; // chars before buf[0], for error messages
+    private final StringBuilder text = new StringBuilder(128);
+    private boolean started, finished, singleObject, needComma;
+    private int skipped;
+
+    public JsonEventReader(Reader in) {
+        this.in = in;
+    }
+
+    public static JsonEventReader open(Path path) throws IOException {
+        return new JsonEventReader(Files.newBufferedReader(path, StandardCharsets.UTF_8));
+    }
+
+    // Feeds every event of the file to sink, returns how many objects were skipped
+    public static int read(Path path, Consumer<CalendarEvent> sink) throws IOException {
+        try (JsonEventReader reader = open(path)) {
+            reader.forEach(sink);
+            return reader.getSkipped();
+        }
+    }
+
+    public int getSkipped() { return skipped; }
+
+    public void forEach(Consumer<CalendarEvent> sink) throws IOException {
+        CalendarEvent e;
+        while ((e = next()) != null) sink.accept(e);
+    }
+
+    // Next event, or null once the array is closed
+    public CalendarEvent next() throws IOException {
+        if (!started) {
+            started = true;
+            if (peek() == '\uFEFF') pos++; // UTF-8 BOM, FormatDetector looks past it too
+            int c = skipWhitespace();
+            if (c == -1) finished = true;
+            else if (c == '[') pos++;
+            else if (c == '{') singleObject = true;
+            else throw syntax("expected '[' or '{'");
+        }
+        while (!finished) {
+            int c = skipWhitespace();
+            if (c == -1) throw syntax("unexpected end of input");
+            if (!singleObject) {
+                if (c == ']') {
+                    pos++;
+                    finished = true;
+                    break;
+                }
+                if (needComma) {
+                    if (c != ',') throw syntax("expected ',' or ']'");
+                    pos++;
+                    c = skipWhitespace();
+                }
+            }
+            if (c != '{') throw syntax("expected '{'");
+            pos++;
+            needComma = true;
+            if (singleObject) finished = true;
+            CalendarEvent e = readObject();
+            if (e != null) return e;
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+//===================================OBJECTS====================================
+    // Reads the members of one object (the '{' is already consumed)
+    private CalendarEvent readObject() throws IOException {
+        String id = null, title = "", description = "", location = "", start = null, end = null;
+        boolean deleted = false;
+        int c = skipWhitespace();
+        if (c == '}') {
+            pos++;
+        } else {
+            while (true) {
+                if (skipWhitespace() != '"') throw syntax("expected a field name");
+                pos++;
+                String key = readString();
+                if (skipWhitespace() != ':') throw syntax("expected ':'");
+                pos++;
+                if (skipWhitespace() == '"') {
+                    pos++;
+                    String value = readString();
+                    switch (key) {
+                        case "id", "uid" -> id = value;
+                        case "title" -> title = value;
+                        case "description" -> description = value;
+                        case "location" -> location = value;
+                        case "start" -> start = value;
+                        case "end" -> end = value;
+                        default -> { }
+                    }
+                } else if (key.equals("deleted")) {
+                    deleted = readLiteral().equals("true");
+                } else {
+                    skipValue();
+                }
+                c = skipWhitespace();
+                pos++;
+                if (c == '}') break;
+                if (c != ',') throw syntax("expected ',' or '}'");
+            }
+        }
+
+        if (deleted && id != null && !id.isEmpty()) {
+            try {
+                return CalendarEvent.removal(id, start == null ? CalendarEvent.NO_TIME : CalendarEvent.parseIsoMinute(start));
+            } catch (DateTimeException | IndexOutOfBoundsException bad) {
+                return CalendarEvent.removal(id, CalendarEvent.NO_TIME);
+            }
+        }
+        if (start == null || end == null) {
+            skipped++;
+            return null;
+        }
+        try {
+            long startMinute = CalendarEvent.parseIsoMinute(start);
+            long endMinute = CalendarEvent.parseIsoMinute(end);
+            return id == null || id.isEmpty()
+                    ? CalendarEvent.withContentId(title, description, location, startMinute, endMinute)
+                    : new CalendarEvent(id, title, description, location, startMinute, endMinute);
+        } catch (DateTimeException | IndexOutOfBoundsException bad) {
+            skipped++;
+            return null;
+        }
+    }
+
+    // Skips any JSON value: nested objects/arrays, strings, numbers, true/false/null
+    private void skipValue() throws IOException {
+        int depth = 0;
+        while (true) {
+            int c = skipWhitespace();
+            if (c == -1) throw syntax("unexpected end of input");
+            if (c == '"') {
+                pos++;
+                readString();
+            } else if (c == '{' || c == '[') {
+                pos++;
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (depth == 0) return; // belongs to the caller
+                pos++;
+                depth--;
+            } else if (c == ',' || c == ':') {
+                if (depth == 0) return;
+                pos++;
+            } else {
+                while (true) { // bare literal
+                    int d = peek();
+                    if (d == -1 || d == ',' || d == '}' || d == ']' || Character.isWhitespace(d)) break;
+                    pos++;
+                }
+            }
+            if (depth == 0) return;
+        }
+    }
+
+    // A bare literal (true, false, null, a number) as text
+    private String readLiteral() throws IOException {
+        text.setLength(0);
+        while (true) {
+            int d = peek();
+            if (d == -1 || d == ',' || d == '}' || d == ']' || Character.isWhitespace(d)) return text.toString();
+            if (d == '{' || d == '[' || d == '"') throw syntax("expected a literal");
+            text.append((char) d);
+            pos++;
+        }
+    }
+
+    // Reads up to the closing quote (the opening one is consumed) and unescapes
+    private String readString() throws IOException {
+        text.setLength(0);
+        while (true) {
+            if (pos >= limit && !fill()) throw syntax("unterminated string");
+            // copy the plain run in one go
+            int runStart = pos;
+            while (pos < limit) {
+                char ch = buf[pos];
+                if (ch == '"' || ch == '\\') break;
+                pos++;
+            }
+            text.append(buf, runStart, pos - runStart);
+            if (pos >= limit) continue;
+
+            char ch = buf[pos++];
+            if (ch == '"') return text.toString();
+            int esc = read();
+            switch (esc) {
+                case '"' -> text.append('"');
+                case '\\' -> text.append('\\');
+                case '/' -> text.append('/');
+                case 'b' -> text.append('\b');
+                case 'f' -> text.append('\f');
+                case 'n' -> text.append('\n');
+                case 'r' -> text.append('\r');
+                case 't' -> text.append('\t');
+                case 'u' -> {
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int h = Character.digit(read(), 16);
+                        if (h < 0) throw syntax("bad \\u escape");
+                        code = code * 16 + h;
+                    }
+                    text.append((char) code);
+                }
+                default -> throw syntax("bad escape");
+            }
+        }
+    }
+
+//===================================CHAR PLUMBING====================================
+    private boolean fill() throws IOException {
+        consumed += limit;
+        pos = 0;
+        limit = 0;
+        int n = in.read(buf, 0, buf.length);
+        if (n <= 0) return false;
+        limit = n;
+        return true;
+    }
+
+    private int peek() throws IOException {
+        if (pos >= limit && !fill()) return -1;
+        return buf[pos];
+    }
+
+    private int read() throws IOException {
+        if (pos >= limit && !fill()) return -1;
+        return buf[pos++];
+    }
+
+    // Peeks the next non-whitespace char without consuming it
+    private int skipWhitespace() throws IOException {
+        while (true) {
+            if (pos >= limit && !fill()) return -1;
+            char ch = buf[pos];
+            if (ch != ' ' && ch != '\n' && ch != '\r' && ch != '\t') return ch;
+            pos++;
+        }
+    }
+
+    private IOException syntax(String message) {
+        return new IOException("JSON syntax error at char " + (consumed + pos) + ": " + message);
+    }
+}//End Class
@@ -0,0 +1,185 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.function.Consumer;
+
+/**
+ * The month view's day grid as one component that paints itself, instead of a JButton per day rebuilt
+ * on every change. setMonth()/reload() fetch the month's summary (per-day counts, off days, first titles)
+ * from CalendarSystem's month cache and repaint; painting only reads that summary, with colors, fonts and
+ * labels made once. Clicks are mapped back to a date by arithmetic and tooltips are built only for the
+ * cell under the mouse, from the cached titles.
+ */
+public class MonthGrid extends JComponent {
+    private static final int GAP = 5;
+    private static final String[] DAY_LABELS = new String[32];
+    private static final String[] HEADERS = new String[7];
+    private static final Color OFF = new Color(255, 200, 200);       // light red
+    private static final Color[] GREENS = new Color[5];              // by event count, darker with more
+    private static final Color BORDER = new Color(184, 184, 184);
+    private static final Color HOVER = new Color(120, 140, 200);
+
+    static {
+        for (int d = 1; d <= 31; d++) DAY_LABELS[d] = String.valueOf(d);
+        for (int i = 0; i < 7; i++) HEADERS[i] = DayOfWeek.of(i == 0 ? 7 : i).toString().substring(0, 2); // SU first
+        for (int n = 1; n < GREENS.length; n++) GREENS[n] = new Color(200, Math.max(255 - n * 20, 180), 200);
+    }
+
+    private final CalendarSystem calendarSystem;
+    private YearMonth month = YearMonth.now();
+    private int firstColumn, days, weeks;
+    private CalendarSystem.MonthSummary summary;
+    private int hoverDay = -1;
+    private Consumer<LocalDate> onDayClicked = d -> { };
+
+    private Font font, boldFont;                    // derived when the component's font changes
+
+    public MonthGrid(CalendarSystem calendarSystem) {
+        this.calendarSystem = calendarSystem;
+        setOpaque(true);
+        setFont(UIManager.getFont("Button.font"));
+        setForeground(UIManager.getColor("Label.foreground"));
+        setBackground(UIManager.getColor("Panel.background"));
+        setPreferredSize(new Dimension(560, 420));
+        ToolTipManager.sharedInstance().registerComponent(this);
+
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int day = dayAt(e.getX(), e.getY());
+                if (day > 0 && SwingUtilities.isLeftMouseButton(e)) onDayClicked.accept(month.atDay(day));
+            }
+
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                setHover(dayAt(e.getX(), e.getY()));
+            }
+
+            @Override
+            public void mouseExited(MouseEvent e) {
+                setHover(-1);
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        reload();
+    }
+
+    public void setOnDayClicked(Consumer<LocalDate> onDayClicked) {
+        this.onDayClicked = onDayClicked;
+    }
+
+    public YearMonth getMonth() { return month; }
+
+    public void setMonth(YearMonth month) {
+        this.month = month;
+        reload();
+    }
+
+    // Re-reads the model for the current month (after edits or an import) and repaints
+    public void reload() {
+        LocalDate first = month.atDay(1);
+        firstColumn = first.getDayOfWeek().getValue() % 7;
+        days = month.lengthOfMonth();
+        weeks = (firstColumn + days + 6) / 7;
+        summary = calendarSystem.getMonthSummary(month); // cached until an edit touches this month
+        hoverDay = -1;
+        repaint();
+    }
+
+    // Events on that day of the month in the current model
+    int countOn(int day) { return summary.count(day); }
+
+    boolean isOffDay(int day) { return summary.isOffDay(day); }
+
+//===================================HIT TESTING====================================
+    private int cellWidth() { return Math.max(1, (getWidth() - GAP * 6) / 7); }
+
+    private int cellHeight() { return Math.max(1, (getHeight() - GAP * weeks) / (weeks + 1)); }
+
+    // Day of month under (x, y), or -1 for headers, gaps and blank cells
+    int dayAt(int x, int y) {
+        int w = cellWidth(), h = cellHeight();
+        int column = x / (w + GAP), row = y / (h + GAP) - 1;
+        if (column > 6 || row < 0 || row >= weeks) return -1;
+        if (x - column * (w + GAP) >= w || y - (row + 1) * (h + GAP) >= h) return -1; // in a gap
+        int day = row * 7 + column - firstColumn + 1;
+        return day >= 1 && day <= days ? day : -1;
+    }
+
+    private void setHover(int day) {
+        if (day == hoverDay) return;
+        if (hoverDay > 0) repaintDay(hoverDay);
+        hoverDay = day;
+        if (day > 0) repaintDay(day);
+    }
+
+    private void repaintDay(int day) {
+        int cell = firstColumn + day - 1;
+        int w = cellWidth(), h = cellHeight();
+        repaint((cell % 7) * (w + GAP), (cell / 7 + 1) * (h + GAP), w, h);
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent e) {
+        int day = dayAt(e.getX(), e.getY());
+        if (day < 0 || summary.count(day) == 0) return null;
+        StringBuilder tip = new StringBuilder("<html>");
+        int shown = summary.titleCount(day);
+        for (int i = 0; i < shown; i++) {
+            if (i > 0) tip.append("<br>");
+            tip.append("• ").append(escape(summary.title(day, i)));
+        }
+        if (summary.count(day) > shown) tip.append("<br>… and ").append(summary.count(day) - shown).append(" more");
+        return tip.append("</html>").toString();
+    }
+
+    private static String escape(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;");
+    }
+
+//===================================PAINTING====================================
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setColor(getBackground());
+        g2.fillRect(0, 0, getWidth(), getHeight());
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        Font base = getFont();
+        if (base != font) {
+            font = base;
+            boldFont = base.deriveFont(Font.BOLD);
+        }
+
+        int w = cellWidth(), h = cellHeight();
+        Rectangle clip = g2.getClipBounds();
+        g2.setFont(boldFont);
+        g2.setColor(getForeground());
+        for (int c = 0; c < 7; c++) centered(g2, HEADERS[c], c * (w + GAP), 0, w, h);
+
+        Color plain = UIManager.getColor("Button.background");
+        for (int day = 1; day <= days; day++) {
+            int cell = firstColumn + day - 1;
+            int x = (cell % 7) * (w + GAP), y = (cell / 7 + 1) * (h + GAP);
+            if (clip != null && !clip.intersects(x, y, w, h)) continue; // hover repaints touch one or two cells
+            int n = summary.count(day);
+            g2.setColor(summary.isOffDay(day) ? OFF : n > 0 ? GREENS[Math.min(n, GREENS.length - 1)] : plain);
+            g2.fillRoundRect(x, y, w, h, 6, 6);
+            g2.setColor(day == hoverDay ? HOVER : BORDER);
+            g2.drawRoundRect(x, y, w - 1, h - 1, 6, 6);
+            g2.setColor(getForeground());
+            g2.setFont(n > 0 ? boldFont : font);
+            centered(g2, DAY_LABELS[day], x, y, w, h);
+        }
+    }
+
+    private static void centered(Graphics2D g, String text, int x, int y, int w, int h) {
+        FontMetrics fm = g.getFontMetrics();
+        g.drawString(text, x + (w - fm.stringWidth(text)) / 2, y + (h - fm.getHeight()) / 2 + fm.getAscent());
+    }
+}//End Class
@@ -0,0 +1,181 @@
+import javax.swing.*;
+import java.awt.*;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A long import or export off the EDT, with a small non-modal dialog: progress bar, a status line and
+ * Cancel. The work runs in work() on a SwingWorker thread and calls report(done, total, status) as it
+ * goes; reports are coalesced by SwingWorker, so the EDT only sees the latest one per repaint no matter
+ * how often the worker reports. The rest of the window stays usable while it runs. A job that changes the
+ * store as it goes (an import adding batches) calls changed(), and the EDT then gets storeChanged() once per
+ * chunk of updates, so the views can reload while the job is still running.
+ */
+public abstract class ProgressTask<T> extends SwingWorker<T, ProgressTask.Report> {
+
+    // One progress update. total <= 0 means the size isn't known (indeterminate bar). A null status marks
+    // a "store changed" notice rather than progress.
+    static final class Report {
+        static final Report CHANGED = new Report(0, 0, null);
+
+        final long done, total;
+        final String status;
+
+        Report(long done, long total, String status) {
+            this.done = done;
+            this.total = total;
+            this.status = status;
+        }
+    }
+
+    private final Component parent;
+    private final JDialog dialog;
+    private final JProgressBar bar = new JProgressBar(0, 1000);
+    private final JLabel statusLabel = new JLabel("Starting...");
+
+    protected ProgressTask(Component parent, String title) {
+        this.parent = parent;
+        Window owner = parent == null ? null : SwingUtilities.getWindowAncestor(parent);
+        if (owner == null && parent instanceof Window) owner = (Window) parent;
+        dialog = new JDialog(owner, title, Dialog.ModalityType.MODELESS);
+        dialog.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+
+        JButton cancel = new JButton("Cancel");
+        cancel.addActionListener(e -> {
+            cancel(false); // no interrupt: it would close whatever FileChannel the worker is in (journal included)
+            statusLabel.setText("Cancelling...");
+            cancel.setEnabled(false);
+        });
+        bar.setIndeterminate(true);
+        bar.setStringPainted(true);
+        bar.setString("");
+
+        JPanel body = new JPanel(new BorderLayout(8, 8));
+        body.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
+        body.add(statusLabel, BorderLayout.NORTH);
+        body.add(bar, BorderLayout.CENTER);
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+        buttons.add(cancel);
+        body.add(buttons, BorderLayout.SOUTH);
+        dialog.add(body);
+        dialog.setSize(420, 140);
+        dialog.setLocationRelativeTo(parent);
+    }
+
+    // Shows the dialog and starts the work. Call on the EDT.
+    public void start() {
+        dialog.setVisible(true);
+        execute();
+    }
+
+    // The job, on the worker thread. Should call checkCancelled() (or use counting()) in its loops.
+    protected abstract T work() throws Exception;
+
+    // On the EDT once work() returned normally
+    protected abstract void succeeded(T result);
+
+    // On the EDT after Cancel; what the job had done so far is in the last report
+    protected void cancelled() { }
+
+    // On the EDT after the worker called changed(); several calls in a row come through as one
+    protected void storeChanged() { }
+
+    @Override
+    protected final T doInBackground() throws Exception {
+        return work();
+    }
+
+    // From the worker: progress so far
+    protected void report(long done, long total, String status) {
+        publish(new Report(done, total, status));
+    }
+
+    // From the worker: the store now holds more of the job's work (e.g. an import batch went in)
+    protected void changed() {
+        publish(Report.CHANGED);
+    }
+
+    protected void checkCancelled() {
+        if (isCancelled()) throw new CancellationException();
+    }
+
+    // Wraps a stream so reading it goes to bytesRead() every 64 KB and stops with InterruptedIOException on Cancel
+    protected InputStream counting(InputStream in, long total) {
+        return new FilterInputStream(in) {
+            private long count, reported;
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) advanced(1);
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) advanced(n);
+                return n;
+            }
+
+            private void advanced(int n) throws InterruptedIOException {
+                if (isCancelled()) throw new InterruptedIOException("cancelled");
+                count += n;
+                if (count - reported >= 1 << 16) {
+                    reported = count;
+                    bytesRead(count, total);
+                }
+            }
+        };
+    }
+
+    protected void bytesRead(long count, long total) {
+        report(count, total, "Read " + megabytes(count) + " of " + megabytes(total));
+    }
+
+    static String megabytes(long bytes) {
+        return String.format("%.1f MB", bytes / 1048576.0);
+    }
+
+    @Override
+    protected final void process(List<Report> reports) {
+        Report last = null; // older progress reports are stale by now
+        boolean changed = false;
+        for (Report r : reports) {
+            if (r == Report.CHANGED) changed = true;
+            else last = r;
+        }
+        if (last != null) {
+            if (last.total > 0) {
+                bar.setIndeterminate(false);
+                bar.setValue((int) Math.min(1000, last.done * 1000 / last.total));
+                bar.setString(last.done * 100 / last.total + "%");
+            }
+            statusLabel.setText(last.status);
+        }
+        if (changed) storeChanged();
+    }
+
+    @Override
+    protected final void done() {
+        dialog.dispose();
+        if (isCancelled()) {
+            cancelled();
+            return;
+        }
+        try {
+            succeeded(get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            JOptionPane.showMessageDialog(parent, dialog.getTitle() + " failed: " + cause.getMessage(), "Error",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+}//End Class
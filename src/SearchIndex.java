@@ -0,0 +1,197 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Inverted index for keyword search: term -> (event id -> which fields hold the term).
+ * Terms are lower-cased runs of letters/digits from title, description and location. The term map is
+ * sorted, so a prefix query is one subMap range. CalendarSystem keeps it in step with add/remove under its
+ * write lock; readers search without locking.
+ */
+public class SearchIndex {
+    static final int TITLE = 1;
+    static final int DESCRIPTION = 2;
+    static final int LOCATION = 4;
+
+    private final NavigableMap<String, Map<String, Integer>> postings = new ConcurrentSkipListMap<>();
+    private final Function<String, CalendarEvent> lookup;
+
+    public SearchIndex(Function<String, CalendarEvent> lookup) {
+        this.lookup = lookup;
+    }
+
+    public void add(CalendarEvent e) {
+        forEachTerm(e, (term, field) -> post(term, e.getId(), field));
+    }
+
+    /**
+     * Bulk add. Loaded and imported calendars repeat the same title/location/description objects a lot
+     * (the snapshot string table, shared keys in imports), so each distinct string is tokenized once.
+     */
+    public void addAll(Collection<CalendarEvent> batch) {
+        Map<String, String[]> terms = new IdentityHashMap<>();
+        Function<String, String[]> tokens = text -> tokenize(text).toArray(new String[0]);
+        for (CalendarEvent e : batch) {
+            String id = e.getId();
+            for (String t : terms.computeIfAbsent(e.getTitle(), tokens)) post(t, id, TITLE);
+            for (String t : terms.computeIfAbsent(e.getDescription(), tokens)) post(t, id, DESCRIPTION);
+            for (String t : terms.computeIfAbsent(e.getLocation(), tokens)) post(t, id, LOCATION);
+        }
+    }
+
+    private void post(String term, String id, int field) {
+        Map<String, Integer> ids = postings.get(term);
+        if (ids == null) ids = postings.computeIfAbsent(term, k -> new ConcurrentHashMap<>());
+        ids.merge(id, field, (a, b) -> a | b);
+    }
+
+    public void clear() {
+        postings.clear();
+    }
+
+    public void remove(CalendarEvent e) {
+        forEachTerm(e, (term, field) -> postings.computeIfPresent(term, (t, ids) -> {
+            ids.remove(e.getId());
+            return ids.isEmpty() ? null : ids;
+        }));
+    }
+
+    /**
+     * Every query word must prefix-match a word in the title or description, and every word of the
+     * location filter must prefix-match a word of the location. Results are ranked: title hits beat
+     * description hits, ties go to the earlier event. Blank keyword and location return nothing.
+     */
+    public List<CalendarEvent> search(String keyword, String location) {
+        return search(keyword, location, Integer.MAX_VALUE);
+    }
+
+    // Only the best limit results, in rank order. A bounded heap instead of sorting every hit,
+    // so a broad query's first page costs O(hits log limit).
+    public List<CalendarEvent> search(String keyword, String location, int limit) {
+        Map<String, Integer> scores = scores(keyword, location);
+        if (scores.isEmpty() || limit <= 0) return new ArrayList<>();
+        Comparator<CalendarEvent> rank = rank(scores);
+        List<CalendarEvent> hits = resolve(scores);
+        if (limit < hits.size()) return best(hits, limit, rank);
+        hits.sort(rank);
+        return hits;
+    }
+
+    /**
+     * The whole ranked list, scored once: when there are more than firstPage hits, the best firstPage go to
+     * onFirstPage (same order) before the rest is sorted. Search-as-you-type shows that page right away.
+     */
+    public List<CalendarEvent> search(String keyword, String location, int firstPage,
+                                      Consumer<List<CalendarEvent>> onFirstPage) {
+        Map<String, Integer> scores = scores(keyword, location);
+        if (scores.isEmpty()) return new ArrayList<>();
+        Comparator<CalendarEvent> rank = rank(scores);
+        List<CalendarEvent> hits = resolve(scores);
+        if (firstPage > 0 && firstPage < hits.size()) onFirstPage.accept(best(hits, firstPage, rank));
+        hits.sort(rank);
+        return hits;
+    }
+
+    // Higher score first, ties to the earlier event
+    private static Comparator<CalendarEvent> rank(Map<String, Integer> scores) {
+        return Comparator.<CalendarEvent>comparingInt(e -> -scores.get(e.getId()))
+                .thenComparingLong(CalendarEvent::getStartMinute);
+    }
+
+    // The scored ids as events, unordered; ids removed since they were read are skipped
+    private List<CalendarEvent> resolve(Map<String, Integer> scores) {
+        List<CalendarEvent> hits = new ArrayList<>(scores.size());
+        for (String id : scores.keySet()) {
+            CalendarEvent e = lookup.apply(id);
+            if (e != null) hits.add(e);
+        }
+        return hits;
+    }
+
+    private static List<CalendarEvent> best(List<CalendarEvent> hits, int limit, Comparator<CalendarEvent> rank) {
+        PriorityQueue<CalendarEvent> best = new PriorityQueue<>(limit + 1, rank.reversed()); // worst on top
+        for (CalendarEvent e : hits) {
+            best.add(e);
+            if (best.size() > limit) best.poll();
+        }
+        List<CalendarEvent> results = new ArrayList<>(best);
+        results.sort(rank);
+        return results;
+    }
+
+    // id -> summed score of the events that match every term; empty if any term matches nothing
+    private Map<String, Integer> scores(String keyword, String location) {
+        Set<String> keywordTerms = tokenize(keyword);
+        Set<String> locationTerms = tokenize(location);
+        if (keywordTerms.isEmpty() && locationTerms.isEmpty()) return Map.of();
+
+        Map<String, Integer> scores = null;
+        for (String term : keywordTerms) {
+            scores = intersect(scores, matches(term, TITLE | DESCRIPTION));
+            if (scores.isEmpty()) return scores;
+        }
+        for (String term : locationTerms) {
+            scores = intersect(scores, matches(term, LOCATION));
+            if (scores.isEmpty()) return scores;
+        }
+        return scores;
+    }
+
+    // id -> best score of any indexed term starting with prefix, counting only the given fields
+    private Map<String, Integer> matches(String prefix, int fields) {
+        Map<String, Integer> hits = new HashMap<>();
+        for (Map<String, Integer> ids : postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            for (Map.Entry<String, Integer> posting : ids.entrySet()) {
+                int mask = posting.getValue() & fields;
+                if (mask != 0) hits.merge(posting.getKey(), score(mask), Math::max);
+            }
+        }
+        return hits;
+    }
+
+    private static int score(int mask) {
+        if ((mask & TITLE) != 0) return 3;
+        if ((mask & LOCATION) != 0) return 2;
+        return 1;
+    }
+
+    // AND of two id sets, scores added up. Walks the smaller side.
+    private static Map<String, Integer> intersect(Map<String, Integer> acc, Map<String, Integer> next) {
+        if (acc == null) return next;
+        Map<String, Integer> small = acc.size() <= next.size() ? acc : next;
+        Map<String, Integer> large = small == acc ? next : acc;
+        Map<String, Integer> out = new HashMap<>();
+        for (Map.Entry<String, Integer> e : small.entrySet()) {
+            Integer other = large.get(e.getKey());
+            if (other != null) out.put(e.getKey(), e.getValue() + other);
+        }
+        return out;
+    }
+
+//===================================TOKENIZING====================================
+    private interface TermSink { void accept(String term, int field); }
+
+    private static void forEachTerm(CalendarEvent e, TermSink sink) {
+        for (String t : tokenize(e.getTitle())) sink.accept(t, TITLE);
+        for (String t : tokenize(e.getDescription())) sink.accept(t, DESCRIPTION);
+        for (String t : tokenize(e.getLocation())) sink.accept(t, LOCATION);
+    }
+
+    // Lower-cased runs of letters and digits, duplicates dropped, in order of appearance
+    static Set<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) return Set.of();
+        Set<String> terms = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) start = i;
+            else if (!word && start >= 0) {
+                terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+}//End Class
@@ -1,14 +1,36 @@
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
+/**
+ * Search as you type. Edits restart a short debounce timer; when it fires the query runs on a SwingWorker,
+ * which publishes the first page of ranked results right away and then the full list. A newer query cancels
+ * the one in flight and anything it still delivers is dropped (generation check). Results sit in a JList
+ * over a plain list model with a fixed row height, so only the rows on screen are ever formatted.
+ */
 public class SearchPanel extends JPanel {
+    static final int DEBOUNCE_MILLIS = 200;
+    static final int FIRST_PAGE = 200;
+
     private final CalendarSystem calendarSystem;
     private final JTextField keywordField = new JTextField(20);
     private final JTextField locationField = new JTextField(20);
     private final JButton searchBtn = new JButton("Search");
-    private final JTextArea resultArea = new JTextArea(12, 40);
+    private final JLabel statusLabel = new JLabel(" ");
+    private final EventListModel results = new EventListModel();
+    private final JList<CalendarEvent> resultList = new JList<>(results);
+    private final JTextArea detailArea = new JTextArea(4, 40);
+    private final Timer debounce = new Timer(DEBOUNCE_MILLIS, e -> performSearch());
+    private SearchWorker running;
+    private int generation;
 
     public SearchPanel(CalendarSystem calendarSystem) {
         this.calendarSystem = calendarSystem;
@@ -19,39 +41,149 @@ public class SearchPanel extends JPanel {
         inputPanel.add(keywordField);
         inputPanel.add(new JLabel("Location (optional):"));
         inputPanel.add(locationField);
-        inputPanel.add(new JLabel());  // spacing
+        inputPanel.add(statusLabel);
         inputPanel.add(searchBtn);
 
-        resultArea.setEditable(false);
-        JScrollPane scrollPane = new JScrollPane(resultArea);
+        resultList.setCellRenderer(new EventRenderer());
+        resultList.setFixedCellHeight(resultList.getFontMetrics(resultList.getFont()).getHeight() + 6); // no measuring every row
+        resultList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        resultList.addListSelectionListener(e -> showDetails(resultList.getSelectedValue()));
+        resultList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2 && resultList.getSelectedValue() != null) {
+                    JOptionPane.showMessageDialog(SearchPanel.this, detailArea.getText(), resultList.getSelectedValue().getTitle(),
+                            JOptionPane.INFORMATION_MESSAGE);
+                }
+            }
+        });
+        detailArea.setEditable(false);
+        detailArea.setLineWrap(true);
+        detailArea.setWrapStyleWord(true);
 
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(resultList), new JScrollPane(detailArea));
+        split.setResizeWeight(0.8);
         add(inputPanel, BorderLayout.NORTH);
-        add(scrollPane, BorderLayout.CENTER);
+        add(split, BorderLayout.CENTER);
 
+        debounce.setRepeats(false);
+        DocumentListener typing = new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { debounce.restart(); }
+            @Override public void removeUpdate(DocumentEvent e) { debounce.restart(); }
+            @Override public void changedUpdate(DocumentEvent e) { }
+        };
+        keywordField.getDocument().addDocumentListener(typing);
+        locationField.getDocument().addDocumentListener(typing);
+        keywordField.addActionListener(e -> performSearch()); // Enter skips the wait
+        locationField.addActionListener(e -> performSearch());
         searchBtn.addActionListener(e -> performSearch());
     }
 
+    // On the EDT: drop whatever is in flight and start the current query in the background
     private void performSearch() {
-        String keyword = keywordField.getText().trim().toLowerCase();
-        String locationFilter = locationField.getText().trim().toLowerCase();
-
-        List<CalendarEvent> matches = calendarSystem.getAllEvents().stream()
-                .filter(e -> (e.getTitle().toLowerCase().contains(keyword)
-                        || e.getDescription().toLowerCase().contains(keyword)))
-                .filter(e -> locationFilter.isEmpty() || e.getLocation().toLowerCase().contains(locationFilter))
-                .collect(Collectors.toList());
-
-        if (matches.isEmpty()) {
-            resultArea.setText("No matching events found.");
-        } else {
-            StringBuilder sb = new StringBuilder("Search Results:\n");
-            matches.forEach(e -> sb.append(String.format("• %s (%s to %s)\n  %s @ %s\n\n",
-                    e.getTitle(),
-                    e.getStart(),
-                    e.getEnd(),
-                    e.getDescription(),
-                    e.getLocation())));
-            resultArea.setText(sb.toString());
+        debounce.stop();
+        if (running != null) running.cancel(false);
+        running = new SearchWorker(++generation, keywordField.getText().trim(), locationField.getText().trim());
+        statusLabel.setText("Searching...");
+        running.execute();
+    }
+
+    // The store changed underneath (an import batch went in): run the shown query again once things settle
+    public void reload() {
+        if (generation > 0) debounce.restart(); // nothing shown yet, nothing to refresh
+    }
+
+    private void showResults(List<CalendarEvent> events, boolean complete) {
+        results.setEvents(events);
+        if (events.isEmpty()) statusLabel.setText("No matching events found.");
+        else if (complete) statusLabel.setText(String.format("%,d matches", events.size()));
+        else statusLabel.setText(String.format("Best %,d shown, ranking the rest...", events.size()));
+    }
+
+    private void showDetails(CalendarEvent e) {
+        if (e == null) {
+            detailArea.setText("");
+            return;
+        }
+        detailArea.setText(e.getTitle() + "\n" + e.getStart().format(EventRenderer.TIME) + " to "
+                + e.getEnd().format(EventRenderer.TIME) + " @ " + Objects.toString(e.getLocation(), "") + "\n\n"
+                + Objects.toString(e.getDescription(), ""));
+        detailArea.setCaretPosition(0);
+    }
+
+//===================================BACKGROUND QUERY====================================
+    private class SearchWorker extends SwingWorker<List<CalendarEvent>, List<CalendarEvent>> {
+        private final int id;
+        private final String keyword, location;
+
+        SearchWorker(int id, String keyword, String location) {
+            this.id = id;
+            this.keyword = keyword;
+            this.location = location;
+        }
+
+        @Override
+        protected List<CalendarEvent> doInBackground() {
+            // One scoring pass: the best FIRST_PAGE are shown while the rest of the same hits is sorted
+            return calendarSystem.search(keyword, location, FIRST_PAGE, page -> {
+                publish(page);
+                if (isCancelled()) throw new CancellationException(); // a newer query owns the list, skip the sort
+            });
+        }
+
+        @Override
+        protected void process(List<List<CalendarEvent>> pages) {
+            if (id == generation && !isCancelled()) showResults(pages.get(pages.size() - 1), false);
+        }
+
+        @Override
+        protected void done() {
+            if (id != generation || isCancelled()) return; // a newer query owns the list now
+            try {
+                showResults(get(), true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                statusLabel.setText("Search failed: " + e.getCause().getMessage());
+            }
+        }
+    }
+
+//===================================LIST MODEL AND RENDERER====================================
+    // The result list as is; JList asks for rows by index, so nothing is copied or formatted up front
+    static class EventListModel extends AbstractListModel<CalendarEvent> {
+        private List<CalendarEvent> events = List.of();
+
+        void setEvents(List<CalendarEvent> events) {
+            int old = this.events.size();
+            if (old > 0) { // the list must already be empty when listeners hear about the removal
+                this.events = List.of();
+                fireIntervalRemoved(this, 0, old - 1);
+            }
+            this.events = events;
+            if (!events.isEmpty()) fireIntervalAdded(this, 0, events.size() - 1);
+        }
+
+        @Override
+        public int getSize() { return events.size(); }
+
+        @Override
+        public CalendarEvent getElementAt(int index) { return events.get(index); }
+    }
+
+    // One line per event, built only when the row is painted
+    static class EventRenderer extends DefaultListCellRenderer {
+        static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+        private final StringBuilder line = new StringBuilder(128);
+
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean selected, boolean focused) {
+            CalendarEvent e = (CalendarEvent) value;
+            line.setLength(0);
+            line.append("• ").append(e.getTitle()).append("   ").append(e.getStart().format(TIME))
+                    .append(" to ").append(e.getEnd().format(TIME));
+            if (e.getLocation() != null && !e.getLocation().isEmpty()) line.append("   @ ").append(e.getLocation());
+            return super.getListCellRendererComponent(list, line.toString(), index, selected, focused);
         }
     }
-}
\ No newline at end of file
+}//End Class
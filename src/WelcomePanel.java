@@ -17,6 +17,14 @@ public class WelcomePanel extends JPanel {
         viewCalendarBtn.setAlignmentX(CENTER_ALIGNMENT);
         viewCalendarBtn.addActionListener(e -> app.showCard("calendar"));
 
+        JButton viewYearBtn = new JButton("Year Overview");
+        viewYearBtn.setAlignmentX(CENTER_ALIGNMENT);
+        viewYearBtn.addActionListener(e -> app.showCard("year"));
+
+        JButton viewAgendaBtn = new JButton("Agenda List");
+        viewAgendaBtn.setAlignmentX(CENTER_ALIGNMENT);
+        viewAgendaBtn.addActionListener(e -> app.showCard("agenda"));
+
         // Export Buttons
         JButton exportCsvBtn = new JButton("Export to CSV");
         exportCsvBtn.setAlignmentX(CENTER_ALIGNMENT);
@@ -51,12 +59,18 @@ public class WelcomePanel extends JPanel {
         importJsonBtn.setAlignmentX(CENTER_ALIGNMENT);
         importJsonBtn.addActionListener(e -> app.importCalendar("json"));
 
+        JButton importManyBtn = new JButton("Import Files or Folder...");
+        importManyBtn.setAlignmentX(CENTER_ALIGNMENT);
+        importManyBtn.addActionListener(e -> app.importFiles());
+
         // Layout
         add(Box.createVerticalStrut(40));
         add(title);
         add(Box.createVerticalStrut(20));
         add(addEventBtn);
         add(viewCalendarBtn);
+        add(viewYearBtn);
+        add(viewAgendaBtn);
 
         add(Box.createVerticalStrut(30));
         JLabel exportLabel = new JLabel("Export Calendar:", SwingConstants.CENTER);
@@ -75,5 +89,6 @@ public class WelcomePanel extends JPanel {
         add(importHtmlBtn);
         add(importIcsBtn);
         add(importJsonBtn);
+        add(importManyBtn);
     }//===============================End JPanel===========================
 }//End Class
\ No newline at end of file
@@ -0,0 +1,148 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseEvent;
+import java.time.LocalDate;
+import java.time.Year;
+
+/**
+ * Year-at-a-glance view: one or more years stacked, each as columns of weeks (Sunday on top), each day a
+ * cell colored by how many events it has. The counts come from CalendarSystem.getDayCounts, which edits
+ * keep up to date, so a reload is one int[] copy per year and a 10-year view paints ~3650 rectangles
+ * with no event traversal at all.
+ */
+public class YearHeatmapPanel extends JPanel {
+    private final CalendarSystem calendarSystem;
+    private final JComboBox<Integer> yearBox = new JComboBox<>();
+    private final JComboBox<Integer> spanBox = new JComboBox<>(new Integer[] {1, 2, 5, 10});
+    private final Heatmap heatmap = new Heatmap();
+
+    public YearHeatmapPanel(CalendarSystem calendarSystem) {
+        this.calendarSystem = calendarSystem;
+        setLayout(new BorderLayout());
+
+        for (int y = 2000; y <= 2100; y++) yearBox.addItem(y);
+        yearBox.setSelectedItem(LocalDate.now().getYear());
+        yearBox.addActionListener(e -> reload());
+        spanBox.addActionListener(e -> reload());
+        JButton refreshButton = new JButton("Refresh");
+        refreshButton.addActionListener(e -> reload());
+
+        JPanel controlPanel = new JPanel();
+        controlPanel.add(new JLabel("From year:"));
+        controlPanel.add(yearBox);
+        controlPanel.add(new JLabel("Years:"));
+        controlPanel.add(spanBox);
+        controlPanel.add(refreshButton);
+        add(controlPanel, BorderLayout.NORTH);
+        add(heatmap, BorderLayout.CENTER);
+
+        // Shown as a card, so pick up edits made elsewhere whenever it comes back into view
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentShown(ComponentEvent e) {
+                reload();
+            }
+        });
+        reload();
+    }
+
+    public void reload() {
+        int first = (int) yearBox.getSelectedItem();
+        int span = (int) spanBox.getSelectedItem();
+        int[][] counts = new int[span][];
+        for (int i = 0; i < span; i++) counts[i] = calendarSystem.getDayCounts(first + i);
+        heatmap.show(first, counts);
+    }
+
+//===================================HEATMAP====================================
+    static class Heatmap extends JComponent {
+        private static final int LABEL_WIDTH = 44, GAP = 1, YEAR_GAP = 8;
+        private static final Color EMPTY = new Color(235, 237, 240);
+        private static final Color[] LEVELS = {          // light to dark green, by share of the busiest day
+                new Color(198, 228, 139), new Color(123, 201, 111), new Color(35, 154, 59), new Color(25, 97, 39)};
+
+        private int firstYear;
+        private int[][] counts = new int[0][];
+        private int max;
+        private double logMax;
+
+        Heatmap() {
+            setPreferredSize(new Dimension(760, 480));
+            setFont(UIManager.getFont("Label.font"));
+            setForeground(UIManager.getColor("Label.foreground"));
+            ToolTipManager.sharedInstance().registerComponent(this);
+        }
+
+        void show(int firstYear, int[][] counts) {
+            this.firstYear = firstYear;
+            this.counts = counts;
+            max = 0;
+            for (int[] year : counts) for (int c : year) max = Math.max(max, c);
+            logMax = Math.log(max + 1);
+            repaint();
+        }
+
+        int countOn(LocalDate date) {
+            int i = date.getYear() - firstYear;
+            return i >= 0 && i < counts.length ? counts[i][date.getDayOfYear() - 1] : 0;
+        }
+
+        // Log scale, so one very busy day doesn't wash every other day out to the lightest green
+        private Color colorFor(int count) {
+            if (count <= 0) return EMPTY;
+            int level = (int) (LEVELS.length * Math.log(count + 1) / logMax);
+            return LEVELS[Math.min(Math.max(level, 1), LEVELS.length) - 1];
+        }
+
+        private int cell() {
+            int byWidth = (getWidth() - LABEL_WIDTH) / 54 - GAP;
+            int byHeight = counts.length == 0 ? byWidth : (getHeight() - YEAR_GAP * counts.length) / (counts.length * 7) - GAP;
+            return Math.max(2, Math.min(byWidth, byHeight));
+        }
+
+        // Sunday-first week column of day (0-based day of year) and its row
+        private static int column(int firstWeekday, int day) { return (firstWeekday + day) / 7; }
+
+        private static int firstWeekday(int year) { return Year.of(year).atDay(1).getDayOfWeek().getValue() % 7; }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            g.setColor(getParent() != null ? getParent().getBackground() : Color.WHITE);
+            g.fillRect(0, 0, getWidth(), getHeight());
+            int cell = cell(), step = cell + GAP, band = step * 7 + YEAR_GAP;
+            FontMetrics fm = g.getFontMetrics(getFont());
+            for (int i = 0; i < counts.length; i++) {
+                int top = i * band;
+                g.setColor(getForeground());
+                g.drawString(String.valueOf(firstYear + i), 0, top + (step * 7 + fm.getAscent()) / 2);
+                int weekday = firstWeekday(firstYear + i);
+                int[] year = counts[i];
+                for (int day = 0; day < year.length; day++) {
+                    g.setColor(colorFor(year[day]));
+                    g.fillRect(LABEL_WIDTH + column(weekday, day) * step, top + ((weekday + day) % 7) * step, cell, cell);
+                }
+            }
+        }
+
+        // Date under (x, y), or null
+        LocalDate dateAt(int x, int y) {
+            int cell = cell(), step = cell + GAP, band = step * 7 + YEAR_GAP;
+            if (x < LABEL_WIDTH || y < 0) return null;
+            int i = y / band, row = (y % band) / step, week = (x - LABEL_WIDTH) / step;
+            if (i >= counts.length || row > 6 || (y % band) % step >= cell || (x - LABEL_WIDTH) % step >= cell) return null;
+            int day = week * 7 + row - firstWeekday(firstYear + i);
+            return day >= 0 && day < counts[i].length ? Year.of(firstYear + i).atDay(day + 1) : null;
+        }
+
+        @Override
+        public String getToolTipText(MouseEvent e) {
+            LocalDate date = dateAt(e.getX(), e.getY());
+            if (date == null) return null;
+            int n = countOn(date);
+            return date + " (" + date.getDayOfWeek().toString().substring(0, 3) + "): "
+                    + (n == 0 ? "no events" : n == 1 ? "1 event" : n + " events");
+        }
+    }
+}//End Class
@@ -1,8 +1,18 @@
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.*;
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.*;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.jupiter.api.Assertions.*;
@@ -117,6 +127,961 @@ public class CalendarSystemTest {
         assertEquals("Test", imported.getAllEvents().get(0).getTitle());
     }
 
+    //=====================QUERY TEST========================
+    @Test
+    public void findEventsBetween_returnsSortedRange() {
+        calendar.addEvent(new CalendarEvent("Late", "Desc", "Here",
+                LocalDateTime.of(2025, 7, 6, 15, 0),
+                LocalDateTime.of(2025, 7, 6, 16, 0)));
+        calendar.addEvent(new CalendarEvent("Early", "Desc", "Here",
+                LocalDateTime.of(2025, 7, 6, 8, 0),
+                LocalDateTime.of(2025, 7, 6, 9, 0)));
+        calendar.addEvent(new CalendarEvent("Outside", "Desc", "Here",
+                LocalDateTime.of(2025, 8, 1, 8, 0),
+                LocalDateTime.of(2025, 8, 1, 9, 0)));
+
+        List<CalendarEvent> found = calendar.findEventsBetween(
+                LocalDateTime.of(2025, 7, 4, 0, 0), LocalDateTime.of(2025, 7, 7, 0, 0));
+        assertEquals(3, found.size());
+        assertEquals("Test", found.get(0).getTitle());
+        assertEquals("Early", found.get(1).getTitle());
+        assertEquals("Late", found.get(2).getTitle());
+    }
+
+    @Test
+    public void overnightAndMultiDayEvents_showOnEveryDayTheyCover() {
+        calendar.addEvent(new CalendarEvent("Birthday Bash", "Cake", "Beach",
+                LocalDateTime.of(2025, 7, 5, 22, 0),
+                LocalDateTime.of(2025, 7, 6, 2, 0)));
+        calendar.addEvent(new CalendarEvent("Conference", "Talks", "Hall",
+                LocalDateTime.of(2025, 7, 7, 9, 0),
+                LocalDateTime.of(2025, 7, 11, 17, 0)));
+
+        assertEquals(1, calendar.getEventsForDate(LocalDate.of(2025, 7, 6)).size());
+        assertEquals("Conference", calendar.getEventsForDate(LocalDate.of(2025, 7, 9)).get(0).getTitle());
+        assertTrue(calendar.getEventsForDate(LocalDate.of(2025, 7, 12)).isEmpty());
+
+        calendar.removeEvent(LocalDate.of(2025, 7, 7), "conference");
+        assertTrue(calendar.getEventsForDate(LocalDate.of(2025, 7, 9)).isEmpty());
+    }
+
+    @Test
+    public void eventsById_lookupUpdateAndRemove() {
+        CalendarEvent event = calendar.getAllEvents().get(0);
+        assertSame(event, calendar.getEvent(event.getId()));
+
+        assertTrue(calendar.updateEvent(event.getId(), "Moved", "Desc", "There",
+                LocalDateTime.of(2025, 7, 8, 10, 0), LocalDateTime.of(2025, 7, 8, 11, 0)));
+        assertEquals("Moved", calendar.getEvent(event.getId()).getTitle());
+        assertTrue(calendar.getEventsForDate(LocalDate.of(2025, 7, 4)).isEmpty());
+        assertEquals(1, calendar.getEventsForDate(LocalDate.of(2025, 7, 8)).size());
+
+        assertTrue(calendar.removeEvent(event.getId()));
+        assertNull(calendar.getEvent(event.getId()));
+        assertTrue(calendar.getAllEvents().isEmpty());
+    }
+
+    @Test
+    public void titleAndLocationIndexes_followAddAndRemove() {
+        calendar.addEvent(new CalendarEvent("OFF", "Vacation", "Zoom",
+                LocalDateTime.of(2025, 7, 7, 0, 0), LocalDateTime.of(2025, 7, 7, 23, 59)));
+        calendar.addEvent(new CalendarEvent("off", "Sick", "  zoom ",
+                LocalDateTime.of(2025, 7, 9, 0, 0), LocalDateTime.of(2025, 7, 9, 23, 59)));
+
+        assertEquals(2, calendar.findEventsByTitle("Off").size());
+        assertEquals(2, calendar.findEventsByLocation("ZOOM").size());
+        assertEquals(1, calendar.findEventsByLocation("here").size());
+
+        calendar.removeEvent(LocalDate.of(2025, 7, 9), "OFF");
+        assertEquals(1, calendar.findEventsByTitle("off").size());
+        assertEquals("Vacation", calendar.findEventsByLocation("zoom").get(0).getDescription());
+    }
+
+    @Test
+    public void search_matchesAllTermsByPrefixAndRanksTitlesFirst() {
+        calendar.addEvent(new CalendarEvent("Budget review", "Quarterly numbers", "Zoom",
+                LocalDateTime.of(2025, 7, 10, 9, 0), LocalDateTime.of(2025, 7, 10, 10, 0)));
+        calendar.addEvent(new CalendarEvent("Team lunch", "Review the budget over tacos", "Taco Place",
+                LocalDateTime.of(2025, 7, 1, 12, 0), LocalDateTime.of(2025, 7, 1, 13, 0)));
+
+        List<CalendarEvent> hits = calendar.search("budg rev", "");
+        assertEquals(2, hits.size());
+        assertEquals("Budget review", hits.get(0).getTitle());
+
+        assertEquals(1, calendar.search("review", "taco").size());
+        assertTrue(calendar.search("budget payroll", "").isEmpty());
+
+        calendar.removeEvent(hits.get(0).getId());
+        assertEquals("Team lunch", calendar.search("budget", "").get(0).getTitle());
+    }
+
+    @Test
+    public void importFromIcs_keepsUid() {
+        ensureTestDir();
+        File f = new File("test-output/uid.ics");
+        calendar.exportEventsToIcs(f.getPath());
+
+        CalendarSystem imported = reloadFrom(f, "ics");
+        String id = calendar.getAllEvents().get(0).getId();
+        assertNotNull(imported.getEvent(id));
+    }
+
+    //=====================CONCURRENCY TEST========================
+    @Test
+    public void readersDuringImport_neverSeeTornLists() throws Exception {
+        LocalDateTime base = LocalDateTime.of(2025, 7, 4, 0, 0);
+        Thread importer = new Thread(() -> {
+            for (int batch = 0; batch < 50; batch++) {
+                List<CalendarEvent> events = new ArrayList<>();
+                for (int i = 0; i < 200; i++) {
+                    events.add(new CalendarEvent("Imported", "Desc", "Here",
+                            base.plusMinutes(i), base.plusMinutes(i + 30)));
+                }
+                calendar.addEvents(events);
+            }
+        });
+        importer.start();
+        int lastSeen = 0;
+        while (importer.isAlive()) {
+            List<CalendarEvent> onDay = calendar.getEventsForDate(LocalDate.of(2025, 7, 4));
+            assertTrue(onDay.size() >= lastSeen);
+            assertEquals(1, onDay.size() % 200); // the setup event plus whole batches only
+            lastSeen = onDay.size();
+        }
+        importer.join();
+        assertEquals(10_001, calendar.getAllEvents().size());
+    }
+
+    @Test
+    public void importFromIcs_unfoldsLinesAndReadsParameters() throws IOException {
+        ensureTestDir();
+        File f = new File("test-output/folded.ics");
+        try (PrintWriter w = new PrintWriter(new FileWriter(f))) {
+            w.print("BEGIN:VCALENDAR\r\n");
+            w.print("BEGIN:VEVENT\r\nUID:folded-1\r\nDTSTART;TZID=Europe/Berlin:20250710T090000\r\n");
+            w.print("DTEND;TZID=Europe/Berlin:20250710T100000\r\nSUMMARY:Long title that was\r\n  folded\r\n");
+            w.print("DESCRIPTION:Line one\\nLine two\\, with comma\r\nEND:VEVENT\r\n");
+            w.print("BEGIN:VEVENT\r\nUID:allday-1\r\nDTSTART;VALUE=DATE:20250711\r\nSUMMARY:OFF\r\nEND:VEVENT\r\n");
+            w.print("BEGIN:VEVENT\r\nUID:broken-1\r\nDTSTART:2025xx11\r\nSUMMARY:Broken\r\nEND:VEVENT\r\n");
+            w.print("END:VCALENDAR\r\n");
+        }
+
+        CalendarSystem imported = reloadFrom(f, "ics");
+        assertEquals(2, imported.getAllEvents().size());
+        CalendarEvent folded = imported.getEvent("folded-1");
+        assertEquals("Long title that was folded", folded.getTitle());
+        assertEquals("Line one\nLine two, with comma", folded.getDescription());
+        assertEquals(60L, folded.getEndMinute() - folded.getStartMinute());
+        CalendarEvent allDay = imported.getEvent("allday-1");
+        assertEquals(LocalDateTime.of(2025, 7, 11, 0, 0), allDay.getStart());
+        assertEquals(LocalDateTime.of(2025, 7, 12, 0, 0), allDay.getEnd());
+    }
+
+    @Test
+    public void importFromIcs_ignoresAlarmPropertiesAndReadsWeekDurations() throws IOException {
+        ensureTestDir();
+        File f = new File("test-output/alarm.ics");
+        try (PrintWriter w = new PrintWriter(new FileWriter(f))) {
+            w.print("BEGIN:VCALENDAR\r\nBEGIN:VEVENT\r\nUID:alarm-1\r\nDTSTART:20250710T090000\r\nDURATION:P1W\r\n");
+            w.print("BEGIN:VALARM\r\nACTION:DISPLAY\r\nDESCRIPTION:This is an event reminder\r\nTRIGGER:-P0DT0H10M0S\r\nEND:VALARM\r\n");
+            w.print("SUMMARY:Checkup\r\nDESCRIPTION:Checkup\r\nEND:VEVENT\r\n");
+            w.print("BEGIN:VEVENT\r\nUID:dur-1\r\nDTSTART;TZID=Not/AZone:20250711T090000\r\nDURATION:P1DT2H30M\r\nSUMMARY:Long\r\nEND:VEVENT\r\n");
+            w.print("END:VCALENDAR\r\n");
+        }
+
+        CalendarSystem imported = reloadFrom(f, "ics");
+        assertEquals(2, imported.getAllEvents().size());
+        CalendarEvent alarm = imported.getEvent("alarm-1");
+        assertEquals("Checkup", alarm.getDescription());
+        assertEquals(LocalDateTime.of(2025, 7, 17, 9, 0), alarm.getEnd());
+        CalendarEvent longOne = imported.getEvent("dur-1");
+        assertEquals(LocalDateTime.of(2025, 7, 11, 9, 0), longOne.getStart()); // unknown TZID: kept as written
+        assertEquals(26 * 60 + 30L, longOne.getEndMinute() - longOne.getStartMinute());
+        assertEquals(-15L, IcsReader.durationMinutes("-PT15M"));
+        assertEquals(14 * 24 * 60L, IcsReader.durationMinutes("P2W"));
+    }
+
+    @Test
+    public void importFromIcs_keepsRecurrenceOverridesApartFromTheirSeries() throws IOException {
+        ensureTestDir();
+        File f = new File("test-output/series.ics");
+        try (PrintWriter w = new PrintWriter(new FileWriter(f))) {
+            w.print("BEGIN:VCALENDAR\r\n");
+            w.print("BEGIN:VEVENT\r\nUID:series-1\r\nDTSTART:20250106T090000\r\nDTEND:20250106T091500\r\nRRULE:FREQ=DAILY\r\nSUMMARY:Standup\r\nEND:VEVENT\r\n");
+            w.print("BEGIN:VEVENT\r\nUID:series-1\r\nRECURRENCE-ID:20250107T090000\r\nDTSTART:20250107T100000\r\nDTEND:20250107T101500\r\nSUMMARY:Standup (moved)\r\nEND:VEVENT\r\n");
+            w.print("BEGIN:VEVENT\r\nUID:series-1\r\nRECURRENCE-ID;TZID=Europe/Berlin:20250108T090000\r\nDTSTART:20250108T110000\r\nDTEND:20250108T111500\r\nSUMMARY:Standup (moved again)\r\nEND:VEVENT\r\n");
+            w.print("END:VCALENDAR\r\n");
+        }
+
+        CalendarSystem imported = reloadFrom(f, "ics");
+        assertEquals(3, imported.size());
+        assertEquals("Standup", imported.getEvent("series-1").getTitle());
+        assertEquals("Standup (moved)", imported.getEvent("series-1/20250107T090000").getTitle());
+        assertEquals("Standup (moved again)", imported.getEvent("series-1/20250108T090000").getTitle());
+        assertArrayEquals(new int[]{0, 0, 3, 0}, imported.addEvents(readAll(f.toPath())));
+
+        // Exported as UID + RECURRENCE-ID again, so a round trip finds the same three ids
+        File out = new File("test-output/series-out.ics");
+        imported.exportEventsToIcs(out.getPath());
+        String ics = new String(Files.readAllBytes(out.toPath()), "UTF-8");
+        assertTrue(ics.contains("UID:series-1\r\nRECURRENCE-ID:20250107T090000\r\n"));
+        assertFalse(ics.contains("UID:series-1/"));
+        assertArrayEquals(new int[]{0, 0, 3, 0}, imported.addEvents(readAll(out.toPath())));
+    }
+
+    @Test
+    public void import_refusesTimesWithSecondsInsteadOfTruncatingThem() throws IOException {
+        ensureTestDir();
+        File ics = new File("test-output/seconds.ics");
+        try (PrintWriter w = new PrintWriter(new FileWriter(ics))) {
+            w.print("BEGIN:VCALENDAR\r\nBEGIN:VEVENT\r\nUID:whole\r\nDTSTART:20250710T090000\r\nDTEND:20250710T100000\r\nEND:VEVENT\r\n");
+            w.print("BEGIN:VEVENT\r\nUID:odd\r\nDTSTART:20250710T090030\r\nDTEND:20250710T100000\r\nEND:VEVENT\r\nEND:VCALENDAR\r\n");
+        }
+        CalendarSystem fromIcs = reloadFrom(ics, "ics");
+        assertEquals(1, fromIcs.size());
+        assertNull(fromIcs.getEvent("odd"));
+
+        File json = new File("test-output/seconds.json");
+        try (PrintWriter w = new PrintWriter(new FileWriter(json))) {
+            w.println("[{\"id\": \"whole\", \"start\": \"2025-07-04T10:00:00\", \"end\": \"2025-07-04T11:00:00.000\"},");
+            w.println(" {\"id\": \"odd\", \"start\": \"2025-07-04T10:00:30\", \"end\": \"2025-07-04T11:00\"}]");
+        }
+        CalendarSystem fromJson = reloadFrom(json, "json");
+        assertEquals(LocalDateTime.of(2025, 7, 4, 11, 0), fromJson.getEvent("whole").getEnd());
+        assertNull(fromJson.getEvent("odd"));
+        assertThrows(DateTimeException.class, () -> new CalendarEvent("t", "", "", LocalDateTime.of(2025, 7, 4, 10, 0, 1),
+                LocalDateTime.of(2025, 7, 4, 11, 0)));
+    }
+
+    @Test
+    public void importFromJson_handlesEscapesAndUnknownFields() throws IOException {
+        ensureTestDir();
+        File f = new File("test-output/escaped.json");
+        try (PrintWriter w = new PrintWriter(new FileWriter(f))) {
+            w.println("[ {\"title\": \"Say \\\"hi\\\"}, {ok: 1}\", \"tags\": [\"a\", {\"b\": null}], \"count\": 3,");
+            w.println("   \"description\": \"caf\\u00e9\\nnext\", \"location\": \"Room: 5\",");
+            w.println("   \"start\": \"2025-07-04T10:00\", \"end\": \"2025-07-04T11:30\"},");
+            w.println(" {\"title\": \"No times\"} ]");
+        }
+
+        CalendarSystem imported = reloadFrom(f, "json");
+        List<CalendarEvent> events = imported.getAllEvents();
+        assertEquals(1, events.size());
+        assertEquals("Say \"hi\"}, {ok: 1}", events.get(0).getTitle());
+        assertEquals("café\nnext", events.get(0).getDescription());
+        assertEquals("Room: 5", events.get(0).getLocation());
+        assertEquals(LocalDateTime.of(2025, 7, 4, 11, 30), events.get(0).getEnd());
+    }
+
+    @Test
+    public void importFromCsv_handlesQuotedCommasNewlinesAndEscapedQuotes() throws IOException {
+        ensureTestDir();
+        File f = new File("test-output/rfc4180.csv");
+        try (PrintWriter w = new PrintWriter(new FileWriter(f))) {
+            w.print("Start,End,Title,Location,Description\r\n");
+            w.print("2025-07-04T10:00,2025-07-04T11:00,\"Lunch, then \"\"coffee\"\"\",Cafe,\"Line one\r\nLine two\"\r\n");
+            w.print("not a date,2025-07-04T11:00,Broken,Nowhere,x\r\n");
+            w.print("2025-07-05T09:00,2025-07-05T09:30,Standup,Zoom,Daily\r\n");
+        }
+
+        CalendarSystem imported = reloadFrom(f, "csv");
+        List<CalendarEvent> events = imported.getAllEvents();
+        assertEquals(2, events.size());
+        assertEquals("Lunch, then \"coffee\"", events.get(0).getTitle());
+        assertEquals("Line one\r\nLine two", events.get(0).getDescription());
+        assertEquals("Zoom", events.get(1).getLocation());
+    }
+
+    @Test
+    public void channelTextWriter_copiesAsciiRunsAcrossBufferEdgesAndEncodesTheRest() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < 3 * ChannelTextWriter.BUFFER_SIZE; i++) {
+            text.append("plain ascii run ").append(i).append(i % 5 == 0 ? " caf\u00e9 \u20ac \uD83D\uDE00\n" : "\n");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ChannelTextWriter out = new ChannelTextWriter(Channels.newChannel(bytes))) {
+            out.append(text, 0, 7).append(text, 7, text.length());
+            out.append('\uD83D').append("\uDE00 split pair", 0, 12); // a pair split across calls
+        }
+        String expected = text + "\uD83D\uDE00 split pair";
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), bytes.toByteArray());
+    }
+
+    @Test
+    public void readParallel_findsRecordBoundariesPerChunkAndResyncsOnQuotes() throws IOException {
+        ensureTestDir();
+        File f = new File("test-output/chunked.csv");
+        try (PrintWriter w = new PrintWriter(new FileWriter(f))) {
+            w.print("Title,Description,Location,Start,End\r\n");
+            for (int i = 0; i < 300; i++) {
+                String description = switch (i % 4) {
+                    case 0 -> "\"plain " + i + "\"";
+                    case 1 -> "\"a, b\r\nand a \"\"quote\"\"\r\n\"";
+                    case 2 -> "\"" + "long line without quotes\n".repeat(i % 7 + 1) + "\"";
+                    default -> "unquoted " + i;
+                };
+                w.print("\"Event " + i + "\"," + description + ",Room " + (i % 5) + ","
+                        + LocalDateTime.of(2025, 1, 1, 0, 0).plusHours(i) + "," + LocalDateTime.of(2025, 1, 1, 0, 30).plusHours(i) + "\r\n");
+            }
+        }
+        List<CalendarEvent> expected = new ArrayList<>();
+        try (InputStream in = new FileInputStream(f)) {
+            assertEquals(0, CsvEventReader.read(in, expected::add));
+        }
+        assertEquals(300, expected.size());
+
+        // Cuts land inside quoted fields, between "" and right after line breaks; every size must read the same
+        for (int chunk : new int[] {7, 37, 101, 1000, 1 << 20}) {
+            CsvEventReader.Result result = CsvEventReader.readParallel(f.toPath(), chunk, 0);
+            assertEquals(0, result.skipped);
+            assertEquals(expected.size(), result.events.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertTrue(expected.get(i).sameContent(result.events.get(i)), "chunk " + chunk + ", row " + i);
+            }
+        }
+    }
+
+    @Test
+    public void snapshot_roundTripsAndRejectsCorruption() throws IOException {
+        ensureTestDir();
+        calendar.addEvent(new CalendarEvent("Trip", "Long one", "Here",
+                LocalDateTime.of(2025, 7, 3, 8, 0), LocalDateTime.of(2025, 7, 6, 20, 0)));
+        calendar.addEvent(new CalendarEvent("Test", "Desc", "Here",
+                LocalDateTime.of(1969, 12, 31, 23, 0), LocalDateTime.of(1970, 1, 1, 1, 0)));
+        Path file = Path.of("test-output/calendar.snap");
+        calendar.saveSnapshot(file);
+
+        CalendarSystem loaded = new CalendarSystem();
+        loaded.addEvent(new CalendarEvent("Stale", "", "", LocalDateTime.of(2020, 1, 1, 0, 0), LocalDateTime.of(2020, 1, 1, 1, 0)));
+        loaded.loadSnapshot(file);
+        List<CalendarEvent> before = calendar.getAllEvents(), after = loaded.getAllEvents();
+        assertEquals(before.size(), after.size());
+        for (int i = 0; i < before.size(); i++) {
+            assertEquals(before.get(i).getId(), after.get(i).getId());
+            assertEquals(before.get(i).getTitle(), after.get(i).getTitle());
+            assertEquals(before.get(i).getStart(), after.get(i).getStart());
+            assertEquals(before.get(i).getEnd(), after.get(i).getEnd());
+        }
+        assertTrue(loaded.findEventsByTitle("stale").isEmpty());
+        assertEquals(2, loaded.findEventsByTitle("test").size());
+        assertEquals(1, loaded.search("long", "").size());
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> new CalendarSystem().loadSnapshot(file));
+    }
+
+    @Test
+    public void journal_replaysEditsAfterCrashAndDropsTornTail() throws IOException {
+        Path dir = Files.createTempDirectory("calendar-store");
+        CalendarSystem store = new CalendarSystem();
+        store.openStore(dir, EventJournal.FsyncPolicy.EVERY_COMMIT);
+        CalendarEvent keep = new CalendarEvent("Keep", "", "Here",
+                LocalDateTime.of(2025, 7, 1, 9, 0), LocalDateTime.of(2025, 7, 1, 10, 0));
+        CalendarEvent drop = new CalendarEvent("Drop", "", "Here",
+                LocalDateTime.of(2025, 7, 2, 9, 0), LocalDateTime.of(2025, 7, 2, 10, 0));
+        store.addEvent(keep);
+        store.addEvent(drop);
+        store.removeEvent(drop.getId());
+        store.updateEvent(keep.getId(), "Kept", "moved", "There",
+                LocalDateTime.of(2025, 7, 3, 9, 0), LocalDateTime.of(2025, 7, 3, 10, 0));
+        // no closeStore: the process "crashed", and the last write was cut off half way
+        Files.write(dir.resolve("calendar.journal"), new byte[]{0, 0, 0, 40, 1, 7},
+                StandardOpenOption.APPEND);
+
+        CalendarSystem reopened = new CalendarSystem();
+        reopened.openStore(dir, EventJournal.FsyncPolicy.EVERY_COMMIT);
+        List<CalendarEvent> all = reopened.getAllEvents();
+        assertEquals(1, all.size());
+        assertEquals("Kept", all.get(0).getTitle());
+        assertEquals(LocalDateTime.of(2025, 7, 3, 9, 0), all.get(0).getStart());
+
+        reopened.addEvent(new CalendarEvent("Later", "", "", LocalDateTime.of(2025, 7, 4, 9, 0), LocalDateTime.of(2025, 7, 4, 9, 30)));
+        reopened.closeStore();
+        assertEquals(0L, Files.size(dir.resolve("calendar.journal")));
+        CalendarSystem fromSnapshot = new CalendarSystem();
+        fromSnapshot.openStore(dir, EventJournal.FsyncPolicy.EVERY_COMMIT);
+        assertEquals(2, fromSnapshot.getAllEvents().size());
+        fromSnapshot.closeStore();
+    }
+
+    @Test
+    public void closeJournal_keepsEveryEditWithoutWritingASnapshot() throws IOException {
+        Path dir = Files.createTempDirectory("calendar-store");
+        CalendarSystem store = new CalendarSystem();
+        store.openStore(dir, EventJournal.FsyncPolicy.INTERVAL);
+        store.addEvent(new CalendarEvent("Kept", "", "", LocalDateTime.of(2025, 7, 1, 9, 0), LocalDateTime.of(2025, 7, 1, 10, 0)));
+        store.closeJournal();
+        store.closeJournal(); // already closed, nothing to do
+        assertFalse(Files.exists(dir.resolve("calendar.snap")));
+        assertTrue(Files.size(dir.resolve("calendar.journal")) > 0);
+
+        CalendarSystem reopened = new CalendarSystem();
+        reopened.openStore(dir, EventJournal.FsyncPolicy.INTERVAL);
+        assertEquals(1, reopened.getAllEvents().size());
+        assertEquals("Kept", reopened.getAllEvents().get(0).getTitle());
+        reopened.closeStore();
+    }
+
+    @Test
+    public void journal_compactionRetriesAfterAFailedSnapshotWrite() throws IOException {
+        Path dir = Files.createTempDirectory("calendar-store");
+        CalendarSystem store = new CalendarSystem();
+        store.openStore(dir, EventJournal.FsyncPolicy.EVERY_COMMIT);
+        store.addEvent(new CalendarEvent("First", "", "", LocalDateTime.of(2025, 7, 1, 9, 0), LocalDateTime.of(2025, 7, 1, 10, 0)));
+        Path blocker = Files.createDirectory(dir.resolve("calendar.snap.tmp"));
+        assertThrows(IOException.class, store::closeStore);             // snapshot can't be written
+        assertTrue(Files.exists(dir.resolve("calendar.journal.old")));
+
+        store.addEvent(new CalendarEvent("Second", "", "", LocalDateTime.of(2025, 7, 2, 9, 0), LocalDateTime.of(2025, 7, 2, 10, 0)));
+        assertThrows(IOException.class, store::closeStore);             // still failing, but not stuck
+        Files.delete(blocker);
+        store.closeStore();
+        assertFalse(Files.exists(dir.resolve("calendar.journal.old")));
+        assertEquals(0L, Files.size(dir.resolve("calendar.journal")));
+
+        CalendarSystem reopened = new CalendarSystem();
+        reopened.openStore(dir, EventJournal.FsyncPolicy.EVERY_COMMIT);
+        assertEquals(2, reopened.getAllEvents().size());
+        reopened.closeStore();
+    }
+
+    @Test
+    public void journal_loadsASnapshotAsOneRecordAndFoldsItOnCompaction() throws IOException {
+        Path dir = Files.createTempDirectory("calendar-load");
+        CalendarSystem source = new CalendarSystem();
+        List<CalendarEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            batch.add(new CalendarEvent("Loaded " + (i % 5), "", "", LocalDateTime.of(2025, 1, 1, 9, 0).plusHours(i),
+                    LocalDateTime.of(2025, 1, 1, 10, 0).plusHours(i)));
+        }
+        source.addEvents(batch);
+        Path snap = Files.createTempFile("loaded", ".snap");
+        source.saveSnapshot(snap);
+
+        CalendarSystem store = new CalendarSystem();
+        store.openStore(dir, EventJournal.FsyncPolicy.EVERY_COMMIT);
+        store.addEvent(new CalendarEvent("Before", "", "", LocalDateTime.of(2025, 7, 1, 9, 0), LocalDateTime.of(2025, 7, 1, 10, 0)));
+        store.loadSnapshot(snap);
+        store.addEvent(new CalendarEvent("After", "", "", LocalDateTime.of(2025, 7, 2, 9, 0), LocalDateTime.of(2025, 7, 2, 10, 0)));
+        assertTrue(Files.size(dir.resolve("calendar.journal")) < 1024); // not 500 ADD records
+        assertEquals(100, store.findEventsByTitle("loaded 3").size()); // title index rebuilt on first use
+
+        CalendarSystem crashed = new CalendarSystem(); // as if the process died here: the LOAD record replays
+        crashed.openStore(dir, EventJournal.FsyncPolicy.EVERY_COMMIT);
+        assertEquals(501, crashed.size());
+        assertTrue(crashed.findEventsByTitle("before").isEmpty());
+        assertEquals(1, crashed.findEventsByTitle("after").size());
+
+        store.closeStore(); // compaction folds the loaded copy into calendar.snap
+        try (DirectoryStream<Path> left = Files.newDirectoryStream(dir, "calendar.load-*")) {
+            assertFalse(left.iterator().hasNext());
+        }
+        CalendarSystem reopened = new CalendarSystem();
+        reopened.openStore(dir, EventJournal.FsyncPolicy.EVERY_COMMIT);
+        assertEquals(501, reopened.size());
+        reopened.closeStore();
+    }
+
+    @Test
+    public void importAll_readsEveryFileInAFolderAndReportsEachOne() throws IOException {
+        Path dir = Files.createTempDirectory("calendar-folder");
+        calendar.exportEventsToIcs(dir.resolve("alice.ics").toString());
+        Files.writeString(dir.resolve("room-a.csv"),
+                "Title,Description,Location,Start,End\n\"Sync\",\"\",\"Room A\",\"2025-07-05T09:00\",\"2025-07-05T09:30\"\n");
+        Files.writeString(dir.resolve("broken.json"), "[{\"title\": ");
+        Files.writeString(dir.resolve("notes.txt"), "not a calendar");
+
+        CalendarSystem merged = new CalendarSystem();
+        List<BulkImport.FileResult> results = merged.importAll(List.of(dir));
+        assertEquals(3, results.size());
+        assertEquals("alice.ics", results.get(0).path.getFileName().toString());
+        assertEquals(1, results.get(0).events.size());
+        assertNotNull(results.get(1).error);
+        assertEquals(1, results.get(2).events.size());
+        assertEquals(2, merged.getAllEvents().size());
+        assertEquals(1, merged.findEventsByLocation("room a").size());
+    }
+
+    @Test
+    public void converter_streamsBetweenFormatsAndCleansUpOnError() throws IOException {
+        ensureTestDir();
+        Path ics = Path.of("test-output/convert-in.ics");
+        Path json = Path.of("test-output/convert-out.json");
+        calendar.addEvent(new CalendarEvent("Second, \"quoted\"", "two\nlines", "There",
+                LocalDateTime.of(2025, 7, 5, 9, 0), LocalDateTime.of(2025, 7, 5, 9, 45)));
+        calendar.exportEventsToIcs(ics.toString());
+
+        CalendarConverter.Stats stats = CalendarConverter.convert(ics, json, CalendarFormat.JSON);
+        assertEquals(2L, stats.written);
+        CalendarSystem converted = reloadFrom(json.toFile(), "json");
+        assertEquals(calendar.getAllEvents().get(1).getId(), converted.getAllEvents().get(1).getId());
+        assertEquals("Second, \"quoted\"", converted.getAllEvents().get(1).getTitle());
+        assertEquals("two\nlines", converted.getAllEvents().get(1).getDescription());
+
+        Path broken = Path.of("test-output/convert-broken.json");
+        Files.writeString(broken, "[{\"title\": \"x\", ");
+        Path target = Path.of("test-output/convert-broken.csv");
+        assertThrows(IOException.class, () -> CalendarConverter.convert(broken, target, CalendarFormat.CSV));
+        assertFalse(Files.exists(target));
+    }
+
+    @Test
+    public void importFile_sniffsFormatAndReadsGzipAndZip() throws IOException {
+        ensureTestDir();
+        Path json = Path.of("test-output/sniff.dat");
+        calendar.exportToJson(json.toString());
+        CalendarSystem plain = new CalendarSystem();
+        plain.importFile(json.toString());
+        assertEquals(1, plain.getAllEvents().size());
+        Path bom = Path.of("test-output/bom.json");
+        Files.writeString(bom, "\uFEFF" + Files.readString(json));
+        CalendarSystem withBom = new CalendarSystem();
+        withBom.importFile(bom.toString());
+        assertEquals(1, withBom.getAllEvents().size());
+
+        Path gz = Path.of("test-output/feed.ics.gz");
+        Path ics = Path.of("test-output/feed.ics");
+        calendar.exportEventsToIcs(ics.toString());
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gz))) {
+            Files.copy(ics, out);
+        }
+        Path zip = Path.of("test-output/bundle.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry("people/bob.csv"));
+            out.write(("Title,Description,Location,Start,End\n"
+                    + "\"Bob\",\"\",\"Desk\",\"2025-08-01T09:00\",\"2025-08-01T10:00\"\n").getBytes("UTF-8"));
+            out.putNextEntry(new ZipEntry("README.txt"));
+            out.write("not a calendar".getBytes("UTF-8"));
+            out.putNextEntry(new ZipEntry("rooms/feed.ics.gz"));
+            Files.copy(gz, out);
+        }
+
+        CalendarSystem fromGz = new CalendarSystem();
+        fromGz.importFile(gz.toString());
+        assertEquals("Test", fromGz.getAllEvents().get(0).getTitle());
+
+        CalendarSystem fromZip = new CalendarSystem();
+        fromZip.importFile(zip.toString());
+        assertEquals(2, fromZip.getAllEvents().size());
+        assertEquals(1, fromZip.findEventsByLocation("desk").size());
+    }
+
+    @Test
+    public void exportChangesSince_writesOnlyWhatChangedAfterTheWatermark() throws IOException {
+        ensureTestDir();
+        CalendarEvent stays = new CalendarEvent("Stays", "", "", LocalDateTime.of(2025, 8, 1, 9, 0), LocalDateTime.of(2025, 8, 1, 10, 0));
+        CalendarEvent moves = new CalendarEvent("Moves", "", "", LocalDateTime.of(2025, 8, 2, 9, 0), LocalDateTime.of(2025, 8, 2, 10, 0));
+        CalendarEvent goes = new CalendarEvent("Goes", "", "", LocalDateTime.of(2025, 8, 3, 9, 0), LocalDateTime.of(2025, 8, 3, 10, 0));
+        calendar.addEvents(List.of(stays, moves, goes));
+        long watermark = calendar.exportChangesSince(0, "test-output/delta-full.json", CalendarFormat.JSON);
+
+        calendar.updateEvent(moves.getId(), "Moved", "", "", LocalDateTime.of(2025, 8, 4, 9, 0), LocalDateTime.of(2025, 8, 4, 10, 0));
+        calendar.removeEvent(goes.getId());
+        List<CalendarSystem.Change> delta = calendar.getChangesSince(watermark, calendar.getModSeq());
+        assertEquals(2, delta.size());
+        assertEquals("Moved", delta.get(0).event.getTitle());
+        assertTrue(delta.get(1).isRemoval());
+        assertEquals(goes.getId(), delta.get(1).id);
+        assertTrue(calendar.getModSeq(moves.getId()) > watermark);
+
+        long next = calendar.exportChangesSince(watermark, "test-output/delta.ics", CalendarFormat.ICS);
+        String ics = Files.readString(Path.of("test-output/delta.ics"));
+        assertTrue(ics.contains("SUMMARY:Moved"));
+        assertTrue(ics.contains("UID:" + goes.getId() + "\r\nDTSTAMP:"));
+        assertTrue(ics.contains("STATUS:CANCELLED"));
+        assertFalse(ics.contains("Stays"));
+        assertTrue(calendar.getChangesSince(next, calendar.getModSeq()).isEmpty());
+
+        // A proper iTIP cancel, and both readers apply the delta on top of the full export
+        String cancel = ics.substring(ics.indexOf("METHOD:CANCEL"));
+        assertTrue(cancel.contains("DTSTART:") && cancel.contains("SEQUENCE:1") && cancel.contains("STATUS:CANCELLED"));
+        List<CalendarEvent> read = readAll(Path.of("test-output/delta.ics"));
+        assertEquals(2, read.size());
+        assertTrue(read.get(1).isRemoval());
+        assertEquals(LocalDateTime.of(2025, 8, 3, 9, 0), read.get(1).getStart());
+        calendar.exportChangesSince(watermark, "test-output/delta.json", CalendarFormat.JSON);
+        for (String deltaFile : new String[] {"test-output/delta.ics", "test-output/delta.json"}) {
+            CalendarSystem replica = new CalendarSystem();
+            replica.importFromJson("test-output/delta-full.json");
+            assertEquals(4, replica.size());
+            replica.importFile(deltaFile);
+            assertEquals(3, replica.size());
+            assertNull(replica.getEvent(goes.getId()));
+            assertEquals("Moved", replica.getEvent(moves.getId()).getTitle());
+            assertEquals(LocalDateTime.of(2025, 8, 4, 9, 0), replica.getEvent(moves.getId()).getStart());
+        }
+    }
+
+    @Test
+    public void changeLog_isBoundedAndBulkLoadsResetIt() throws IOException {
+        CalendarSystem mine = new CalendarSystem();
+        long start = mine.getModSeq();
+        List<CalendarEvent> bulk = new ArrayList<>();
+        for (int i = 0; i < CalendarSystem.CHANGE_LOG_LIMIT; i++) {
+            bulk.add(new CalendarEvent("E" + i, "", "", LocalDateTime.of(2025, 1, 1, 0, 0).plusMinutes(i), LocalDateTime.of(2025, 1, 1, 0, 0).plusMinutes(i + 1)));
+        }
+        mine.addEvents(bulk);
+        assertEquals(0, mine.changeLogSize());                   // one bulk import, not one entry per event
+        assertTrue(mine.getChangeFloor() > start);
+        assertEquals(mine.getChangeFloor(), mine.getModSeq(bulk.get(0).getId()));
+        assertEquals(CalendarSystem.CHANGE_LOG_LIMIT, mine.getChangesSince(start, mine.getModSeq()).size()); // too old: everything
+
+        long watermark = mine.getModSeq();
+        for (int i = 0; i < 10; i++) mine.removeEvent(bulk.get(i).getId());
+        List<CalendarSystem.Change> delta = mine.getChangesSince(watermark, mine.getModSeq());
+        assertEquals(10, delta.size());
+        assertTrue(delta.get(0).isRemoval());
+
+        // Single edits past the limit push the oldest entries out and the floor up
+        for (int i = 10; i < CalendarSystem.CHANGE_LOG_LIMIT + 20; i++) {
+            mine.removeEvent(i < bulk.size() ? bulk.get(i).getId() : "none");
+            if (i >= bulk.size()) mine.addEvent(new CalendarEvent("X" + i, "", "", LocalDateTime.of(2026, 1, 1, 0, 0), LocalDateTime.of(2026, 1, 1, 1, 0)));
+        }
+        assertEquals(CalendarSystem.CHANGE_LOG_LIMIT, mine.changeLogSize());
+        assertTrue(mine.getChangeFloor() > watermark);
+        assertEquals(20, mine.getChangesSince(watermark, mine.getModSeq()).stream().filter(c -> !c.isRemoval()).count());
+
+        ensureTestDir();
+        Path snap = Path.of("test-output/changelog.snap");
+        mine.saveSnapshot(snap);
+        mine.loadSnapshot(snap);
+        assertEquals(0, mine.changeLogSize());
+    }
+
+    @Test
+    public void import_upsertsByUidOrContentHashInsteadOfDuplicating() throws IOException {
+        ensureTestDir();
+        CalendarSystem mine = new CalendarSystem();
+        Path csv = Path.of("test-output/no-ids.csv");
+        Files.writeString(csv, "Title,Description,Location,Start,End\n"
+                + "\"Standup\",\"daily\",\"Room A\",\"2025-09-01T09:00\",\"2025-09-01T09:15\"\n"
+                + "\"Review\",\"\",\"Room B\",\"2025-09-01T14:00\",\"2025-09-01T15:00\"\n");
+        mine.importFromCsv(csv.toString());
+        mine.importFromCsv(csv.toString());
+        assertEquals(2, mine.getAllEvents().size());
+        long seq = mine.getModSeq();
+
+        // Same title/time/place but a new description: same content id, so it updates in place
+        Files.writeString(csv, "Title,Description,Location,Start,End\n"
+                + "\"Standup\",\"moved to video\",\"Room A\",\"2025-09-01T09:00\",\"2025-09-01T09:15\"\n"
+                + "\"Review\",\"\",\"Room B\",\"2025-09-01T14:00\",\"2025-09-01T15:00\"\n");
+        mine.importFromCsv(csv.toString());
+        assertEquals(2, mine.getAllEvents().size());
+        assertEquals(1, mine.getChangesSince(seq, mine.getModSeq()).size());
+        assertEquals("moved to video", mine.findEventsByLocation("room a").get(0).getDescription());
+
+        // UIDs survive an ICS round trip, so an edited export replaces rather than adds
+        Path ics = Path.of("test-output/upsert.ics");
+        mine.exportEventsToIcs(ics.toString());
+        CalendarSystem other = new CalendarSystem();
+        other.importFromIcs(ics.toString());
+        Files.writeString(ics, Files.readString(ics).replace("SUMMARY:Review", "SUMMARY:Design review"));
+        int[] upsert = other.addEvents(readAll(ics));
+        assertEquals(0, upsert[0]);
+        assertEquals(1, upsert[1]);
+        assertEquals(1, upsert[2]);
+        assertEquals(2, other.getAllEvents().size());
+        assertEquals(1, other.search("design", null).size());
+    }
+
+    @Test
+    public void htmlImport_toleratesRealWorldMarkupAndRoundTripsIds() throws IOException {
+        ensureTestDir();
+        Path page = Path.of("test-output/messy.html");
+        Files.writeString(page, "<HTML><BODY><!-- <tr><td>not a row</td></tr> -->\n"
+                + "<script>var t = '<tr><td>';</script>\n"
+                + "<TABLE class=\"x\"><THEAD><TR><TH>Start</TH><TH>End</TH><TH>Title</TH><TH>Location</TH></TR></THEAD>\n"
+                + "<tr><td>2025-10-01 09:00<td>2025-10-01\n  10:00\n<td><b>Tom &amp; Jerry</b>\n  &lt;chase&gt;<td>R&#233;union&nbsp;room\n"
+                + "<tr>\n<td>2025-10-02T09:00</td>\n<td>2025-10-02T11:00</td>\n<td>Line<br/>break</td><td></td></tr>\n"
+                + "<tr><td>someday</td><td>never</td><td>Bad</td><td></td></tr>\n"
+                + "</TABLE></BODY></HTML>");
+        List<CalendarEvent> events = new ArrayList<>();
+        int skipped;
+        try (HtmlEventReader reader = HtmlEventReader.open(page)) {
+            reader.forEach(events::add);
+            skipped = reader.getSkipped();
+        }
+        assertEquals(2, events.size());
+        assertEquals(1, skipped);
+        assertEquals("Tom & Jerry <chase>", events.get(0).getTitle());
+        assertEquals("R\u00e9union room", events.get(0).getLocation());
+        assertEquals(LocalDateTime.of(2025, 10, 1, 10, 0), events.get(0).getEnd());
+        assertEquals("Line\nbreak", events.get(1).getTitle());
+
+        CalendarSystem mine = new CalendarSystem();
+        mine.addEvent(new CalendarEvent("A <b> & \"c\"", "two\nlines", "Caf\u00e9",
+                LocalDateTime.of(2025, 10, 3, 9, 0), LocalDateTime.of(2025, 10, 3, 9, 30)));
+        mine.exportToHtml("test-output/roundtrip.html");
+        CalendarSystem back = new CalendarSystem();
+        back.importFromHtml("test-output/roundtrip.html");
+        CalendarEvent original = mine.getAllEvents().get(0);
+        CalendarEvent copy = back.getAllEvents().get(0);
+        assertEquals(original.getId(), copy.getId());
+        assertTrue(original.sameContent(copy));
+    }
+
+    @Test
+    public void importStream_addsInBatchesAndCancelledExportLeavesNoFile() throws IOException {
+        ensureTestDir();
+        StringBuilder csv = new StringBuilder("Title,Description,Location,Start,End\n");
+        for (int i = 0; i < 5; i++) csv.append("\"E").append(i).append("\",\"\",\"\",\"2025-11-0").append(i + 1)
+                .append("T09:00\",\"2025-11-0").append(i + 1).append("T10:00\"\n");
+        CalendarSystem mine = new CalendarSystem();
+        List<Integer> seen = new ArrayList<>();
+        int[] totals = mine.importStream(new ByteArrayInputStream(csv.toString().getBytes("UTF-8")), "feed.csv", 2,
+                t -> seen.add(mine.size()));
+        assertEquals(List.of(2, 4, 5), seen);
+        assertEquals(5, totals[0]);
+
+        List<CalendarEvent> many = new ArrayList<>();
+        for (int i = 0; i < CalendarSystem.PROGRESS_EVERY + 10; i++) {
+            many.add(new CalendarEvent("Bulk " + i, "", "", LocalDateTime.of(2025, 1, 1, 0, 0).plusMinutes(i),
+                    LocalDateTime.of(2025, 1, 1, 0, 0).plusMinutes(i + 1)));
+        }
+        mine.addEvents(many);
+        Path out = Path.of("test-output/cancelled.json");
+        assertThrows(CancellationException.class, () -> mine.export(out, CalendarFormat.JSON, n -> {
+            throw new CancellationException();
+        }));
+        assertFalse(Files.exists(out));
+        assertEquals(mine.size(), mine.export(out, CalendarFormat.JSON, n -> { }));
+    }
+
+    @Test
+    public void monthGrid_countsEachDayFromOneQueryAndMapsClicksToDates() {
+        calendar.addEvent(new CalendarEvent("OFF", "", "", LocalDateTime.of(2025, 7, 10, 0, 0), LocalDateTime.of(2025, 7, 11, 0, 0)));
+        calendar.addEvent(new CalendarEvent("Trip", "", "", LocalDateTime.of(2025, 6, 30, 18, 0), LocalDateTime.of(2025, 7, 2, 9, 0)));
+        MonthGrid grid = new MonthGrid(calendar);
+        grid.setMonth(YearMonth.of(2025, 7));
+        assertEquals(1, grid.countOn(1));
+        assertEquals(1, grid.countOn(2));
+        assertEquals(0, grid.countOn(3));
+        assertEquals(1, grid.countOn(4));   // "Test" from setup
+        assertTrue(grid.isOffDay(10));
+        assertEquals(0, grid.countOn(11));  // ends at midnight, so it's not on the 11th
+
+        // July 2025 starts on a Tuesday: 5 weeks plus the header row, cells 80x60 with 5px gaps
+        grid.setSize(7 * 80 + 6 * 5, 6 * 60 + 5 * 5);
+        assertEquals(-1, grid.dayAt(10, 10));            // header
+        assertEquals(-1, grid.dayAt(10, 70));            // blank Sunday before the 1st
+        assertEquals(1, grid.dayAt(2 * 85 + 10, 70));
+        assertEquals(-1, grid.dayAt(2 * 85 + 82, 70));   // gap between cells
+        assertEquals(31, grid.dayAt(4 * 85 + 10, 5 * 65 + 10));
+    }
+
+    @Test
+    public void monthSummary_isCachedAndOnlyTouchedMonthsAreRebuilt() {
+        YearMonth july = YearMonth.of(2025, 7), august = YearMonth.of(2025, 8);
+        CalendarSystem.MonthSummary jul = calendar.getMonthSummary(july);
+        CalendarSystem.MonthSummary aug = calendar.getMonthSummary(august);
+        assertEquals(1, jul.count(4));
+        assertEquals("Test", jul.title(4, 0));
+        assertSame(jul, calendar.getMonthSummary(july));
+
+        CalendarEvent off = new CalendarEvent("off", "", "", LocalDateTime.of(2025, 7, 20, 0, 0), LocalDateTime.of(2025, 7, 21, 0, 0));
+        calendar.addEvent(off);
+        CalendarSystem.MonthSummary jul2 = calendar.getMonthSummary(july);
+        assertNotSame(jul, jul2);
+        assertTrue(jul2.isOffDay(20));
+        assertFalse(jul2.isOffDay(21));
+        assertSame(aug, calendar.getMonthSummary(august));
+
+        CalendarEvent overMonthEnd = new CalendarEvent("Trip", "", "", LocalDateTime.of(2025, 7, 31, 20, 0), LocalDateTime.of(2025, 8, 1, 8, 0));
+        calendar.addEvent(overMonthEnd);
+        assertEquals(1, calendar.getMonthSummary(august).count(1));
+        assertEquals(1, calendar.getMonthSummary(july).count(31));
+
+        calendar.removeEvent(off.getId());
+        assertFalse(calendar.getMonthSummary(july).isOffDay(20));
+        for (int i = 0; i < CalendarSystem.TITLES_PER_DAY + 3; i++) {
+            calendar.addEvent(new CalendarEvent("T" + i, "", "", LocalDateTime.of(2025, 7, 5, 8, i), LocalDateTime.of(2025, 7, 5, 9, 0)));
+        }
+        CalendarSystem.MonthSummary busy = calendar.getMonthSummary(july);
+        assertEquals(CalendarSystem.TITLES_PER_DAY + 3, busy.count(5));
+        assertEquals(CalendarSystem.TITLES_PER_DAY, busy.titleCount(5));
+        assertEquals("T0", busy.title(5, 0));
+    }
+
+    @Test
+    public void dayCounts_followEveryEditAndFeedTheHeatmap() {
+        CalendarEvent newYear = new CalendarEvent("Party", "", "", LocalDateTime.of(2024, 12, 31, 20, 0), LocalDateTime.of(2025, 1, 1, 2, 0));
+        calendar.addEvent(newYear);
+        assertEquals(1, calendar.getDayCounts(2024)[365]);   // Dec 31 of a leap year
+        assertEquals(366, calendar.getDayCounts(2024).length);
+        assertEquals(1, calendar.getDayCounts(2025)[0]);
+        assertEquals(1, calendar.getDayCounts(2025)[LocalDate.of(2025, 7, 4).getDayOfYear() - 1]);
+
+        calendar.updateEvent(newYear.getId(), "Party", "", "", LocalDateTime.of(2025, 7, 4, 20, 0), LocalDateTime.of(2025, 7, 4, 23, 0));
+        assertEquals(0, calendar.getDayCounts(2024)[365]);
+        assertEquals(0, calendar.getDayCounts(2025)[0]);
+        assertEquals(2, calendar.getDayCounts(2025)[LocalDate.of(2025, 7, 4).getDayOfYear() - 1]);
+
+        calendar.addEvents(List.of(new CalendarEvent("Fair", "", "", LocalDateTime.of(2026, 3, 1, 9, 0), LocalDateTime.of(2026, 3, 4, 0, 0))));
+        int[] y2026 = calendar.getDayCounts(2026);
+        assertEquals(3, Arrays.stream(y2026).sum());          // Mar 1-3, the end at midnight doesn't count
+
+        YearHeatmapPanel.Heatmap heatmap = new YearHeatmapPanel.Heatmap();
+        heatmap.show(2025, new int[][] {calendar.getDayCounts(2025), calendar.getDayCounts(2026)});
+        assertEquals(2, heatmap.countOn(LocalDate.of(2025, 7, 4)));
+        assertEquals(1, heatmap.countOn(LocalDate.of(2026, 3, 3)));
+        // 2025 starts on a Wednesday: Jan 1 is row 3 of week 0. Cells are 10px with a 1px gap after a 44px label.
+        heatmap.setSize(44 + 54 * 11, 2 * (7 * 11 + 8));
+        assertEquals(LocalDate.of(2025, 1, 1), heatmap.dateAt(44 + 2, 3 * 11 + 2));
+        assertNull(heatmap.dateAt(44 + 2, 2 * 11 + 2));      // Dec 31 of the year before
+        assertEquals(LocalDate.of(2026, 1, 1), heatmap.dateAt(44 + 2, 85 + 4 * 11 + 2));
+
+        calendar.removeEvent(newYear.getId());
+        assertEquals(1, calendar.getDayCounts(2025)[LocalDate.of(2025, 7, 4).getDayOfYear() - 1]);
+    }
+
+    @Test
+    public void searchWithLimit_returnsTheFirstPageOfTheFullRanking() {
+        List<CalendarEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String title = i % 7 == 0 ? "Team sync " + i : "Review " + i;
+            batch.add(new CalendarEvent(title, i % 3 == 0 ? "team notes" : "", "Room " + (i % 4),
+                    LocalDateTime.of(2025, 1, 1, 0, 0).plusHours(i), LocalDateTime.of(2025, 1, 1, 0, 30).plusHours(i)));
+        }
+        calendar.addEvents(batch);
+        List<CalendarEvent> all = calendar.search("team", null);
+        List<CalendarEvent> page = calendar.search("team", null, 20);
+        assertEquals(20, page.size());
+        assertEquals(all.subList(0, 20), page);
+        assertEquals(all, calendar.search("team", null, all.size() + 5));
+        assertTrue(calendar.search("nothing-like-this", null, 20).isEmpty());
+
+        // Scored once: the first page handed out early is the head of the list that comes back
+        List<List<CalendarEvent>> pages = new ArrayList<>();
+        assertEquals(all, calendar.search("team", null, 20, pages::add));
+        assertEquals(List.of(all.subList(0, 20)), pages);
+        pages.clear();
+        assertEquals(all, calendar.search("team", null, all.size(), pages::add));
+        assertTrue(pages.isEmpty()); // the whole result fits on the first page, no separate page
+
+        List<CalendarEvent> firstByStart = calendar.search("", "", 3);
+        assertEquals(calendar.getAllEvents().subList(0, 3), firstByStart);
+
+        // Blank and unbounded: a view over a snapshot, same rows as a copy, unaffected by later edits
+        List<CalendarEvent> everything = calendar.search(" ", null);
+        assertEquals(calendar.getAllEvents(), everything);
+        assertEquals(calendar.getAllEvents().get(25), everything.get(25));
+        int before = everything.size();
+        calendar.removeEvent(everything.get(0).getId());
+        assertEquals(before, everything.size());
+        assertThrows(UnsupportedOperationException.class, () -> everything.add(everything.get(0)));
+    }
+
+    @Test
+    public void archiveBefore_keepsHistoricYearsReadableAndThawsThemOnEdit() throws IOException {
+        ensureTestDir();
+        CalendarSystem mine = new CalendarSystem();
+        List<CalendarEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            LocalDateTime start = LocalDateTime.of(2020, 1, 1, 9, 0).plusDays(i * 3);
+            batch.add(new CalendarEvent("Topic " + (i % 4), "", "Room " + (i % 2), start, start.plusHours(1)));
+        }
+        CalendarEvent spanning = new CalendarEvent("New year", "", "", LocalDateTime.of(2023, 12, 31, 20, 0), LocalDateTime.of(2024, 1, 1, 2, 0));
+        batch.add(spanning);
+        mine.addEvents(batch);
+        List<CalendarEvent> all = mine.getAllEvents();
+        List<CalendarEvent> day = mine.getEventsForDate(LocalDate.of(2021, 3, 2));
+        int[] counts = mine.getDayCounts(2021);
+        int busyDays = 0;
+        CalendarSystem.MonthSummary march = mine.getMonthSummary(YearMonth.of(2021, 3));
+        for (int d = 1; d <= march.days(); d++) busyDays += march.count(d);
+
+        int archived = mine.archiveBefore(LocalDate.of(2024, 1, 1));
+        assertEquals(mine.archivedSize(), archived);
+        assertTrue(archived > 400);
+        assertEquals(all.size(), mine.size());
+        List<CalendarEvent> after = mine.getAllEvents();
+        for (int i = 0; i < all.size(); i++) assertTrue(all.get(i).sameContent(after.get(i)));
+        assertEquals(day.size(), mine.getEventsForDate(LocalDate.of(2021, 3, 2)).size());
+        assertArrayEquals(counts, mine.getDayCounts(2021));
+        int busyAfter = 0;
+        for (int d = 1; d <= march.days(); d++) busyAfter += mine.getMonthSummary(YearMonth.of(2021, 3)).count(d);
+        assertEquals(busyDays, busyAfter);
+        assertSame(spanning, mine.getEvent(spanning.getId())); // runs past the cutoff, stays live
+        assertTrue(mine.findEventsByTitle("topic 0").stream().allMatch(e -> e.getStart().getYear() >= 2024));
+
+        // Edits bring an event back; unchanged re-imports don't
+        CalendarEvent old = all.get(10);
+        assertTrue(mine.getEvent(old.getId()).sameContent(old));
+        assertArrayEquals(new int[]{0, 0, 1, 0}, mine.addEvents(List.of(old)));
+        assertEquals(archived, mine.archivedSize());
+        assertTrue(mine.updateEvent(old.getId(), "Moved", "", "", old.getStart().plusHours(2), old.getEnd().plusHours(2)));
+        assertEquals(archived - 1, mine.archivedSize());
+        assertEquals("Moved", mine.getEvent(old.getId()).getTitle());
+        assertEquals(1, mine.findEventsByTitle("moved").size());
+        assertTrue(mine.removeEvent(all.get(11).getId()));
+        assertNull(mine.getEvent(all.get(11).getId()));
+        assertEquals(all.size() - 1, mine.size());
+
+        Path snap = Path.of("test-output/archived.snap");
+        mine.saveSnapshot(snap);
+        CalendarSystem loaded = new CalendarSystem();
+        loaded.loadSnapshot(snap);
+        assertEquals(mine.size(), loaded.size());
+        assertEquals(0, loaded.archivedSize());
+    }
+
+    @Test
+    public void agendaCursors_pageTheStoreInOrderWithoutCopyingIt() {
+        CalendarSystem mine = new CalendarSystem();
+        List<CalendarEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            batch.add(new CalendarEvent("Topic " + (char) ('a' + i % 5), "", "Room " + (i % 3),
+                    LocalDateTime.of(2025, 1, 1, 0, 0).plusHours(999 - i), LocalDateTime.of(2025, 1, 1, 1, 0).plusHours(999 - i)));
+        }
+        mine.addEvents(batch);
+        List<CalendarEvent> byStart = mine.getAllEvents();
+
+        CalendarSystem.AgendaCursor start = mine.agenda(CalendarSystem.AgendaOrder.START);
+        assertEquals(1000, start.size());
+        assertEquals(byStart.subList(250, 506), start.window(250, 256));
+        assertEquals(byStart.subList(990, 1000), start.window(990, 256));
+        assertEquals(24, start.rowAt(CalendarEvent.toEpochMinute(LocalDateTime.of(2025, 1, 2, 0, 0))));
+
+        // Title order: every group in key order, by start inside a group, windows seamless across groups
+        List<CalendarEvent> byTitle = new ArrayList<>(byStart);
+        byTitle.sort(Comparator.comparing((CalendarEvent e) -> e.getTitle().toLowerCase())
+                .thenComparingLong(CalendarEvent::getStartMinute));
+        CalendarSystem.AgendaCursor title = mine.agenda(CalendarSystem.AgendaOrder.TITLE);
+        List<CalendarEvent> paged = new ArrayList<>();
+        for (int from = 0; from < title.size(); from += 256) paged.addAll(title.window(from, 256));
+        assertEquals(byTitle, paged);
+        assertEquals(byTitle.subList(190, 230), title.window(190, 40)); // back up: starts over from the first group
+        assertEquals(byTitle.subList(700, 710), title.window(700, 10));
+
+        for (CalendarEvent e : byStart) if (e.getLocation().equals("Room 1")) mine.removeEvent(e.getId());
+        CalendarSystem.AgendaCursor location = mine.agenda(CalendarSystem.AgendaOrder.LOCATION);
+        assertEquals(667, location.size());
+        List<CalendarEvent> rooms = location.window(0, 1000);
+        assertEquals(667, rooms.size());
+        assertEquals("Room 0", rooms.get(333).getLocation());
+        assertEquals("Room 2", rooms.get(334).getLocation());
+        List<CalendarEvent> room0 = mine.findEventsByLocation("room 0");
+        assertEquals(rooms.subList(0, 334), room0); // a group is already in start order, paged by rank
+        assertEquals(room0.subList(100, 120), location.window(100, 20));
+        assertEquals(-1, location.rowAt(0));
+
+        AgendaPanel.AgendaTableModel model = new AgendaPanel.AgendaTableModel();
+        model.setCursor(mine.agenda(CalendarSystem.AgendaOrder.START));
+        assertEquals(667, model.getRowCount());
+        assertEquals(mine.getAllEvents().get(600).getTitle(), model.getValueAt(600, 2));
+        for (int row = 0; row < 667; row += 50) model.getValueAt(row, 0);
+        assertEquals(3, model.cachedWindows());                  // 667 rows in windows of 256, each fetched once
+        assertEquals("", model.getValueAt(5000, 2));
+    }
+
+    private static List<CalendarEvent> readAll(Path path) throws IOException {
+        List<CalendarEvent> events = new ArrayList<>();
+        CalendarFormat.ICS.read(path, events::add);
+        return events;
+    }
+
     private CalendarSystem reloadFrom(File f, String type) {
         CalendarSystem c = new CalendarSystem();
         switch (type) {